@@ -0,0 +1,203 @@
+package com.google.zxing.cli;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.decode.BinarizerType;
+import com.google.zxing.decode.DecodeFormats;
+import com.google.zxing.decode.FrameDecoder;
+
+/**
+ * 比较各{@link BinarizerType}的识别率和每帧耗时。每一帧依次交给各二值化算法的{@link FrameDecoder}
+ * 完整解码（多尺度，与相机扫描相同的流程；一维码不走按行的快速通道，所有格式都经过被测的二值化），
+ * 统计识别出的帧数、平均每帧耗时和平均每个识别结果的耗时。
+ * <p>
+ * 指定回放目录时遍历其中的所有图片（按文件名排序，含子目录），每帧只读取一次；
+ * 否则在常见预览分辨率上各用一帧合成图像重复解码：从左到右变暗的光照、轻微噪声，中间一个二维码
+ *
+ * <pre>
+ * BinarizerBenchmark [--iterations N] [回放目录]
+ * </pre>
+ *
+ * @author hugo
+ *
+ */
+public final class BinarizerBenchmark {
+
+	private static final int[][] SIZES = { { 640, 480 }, { 1280, 720 },
+			{ 1920, 1080 } };
+
+	private static final String CONTENTS = "http://zxing.example.com/binarizer-benchmark";
+
+	/**
+	 * 计时前每个解码器先解码第一帧的次数
+	 */
+	private static final int WARMUP_DECODES = 10;
+
+	private final BinarizerType[] types = BinarizerType.values();
+
+	private final FrameDecoder[] decoders = new FrameDecoder[types.length];
+
+	private final long[] nanos = new long[types.length];
+
+	private final int[] hits = new int[types.length];
+
+	private int frames;
+
+	private BinarizerBenchmark(Map<DecodeHintType, Object> hints) {
+		for (int i = 0; i < types.length; i++) {
+			// 每个算法各自的解码器，多尺度解码的状态互不影响
+			decoders[i] = new FrameDecoder(hints, types[i], false);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int iterations = 30;
+		File corpus = null;
+		for (int i = 0; i < args.length; i++) {
+			if ("--iterations".equals(args[i]) && i + 1 < args.length) {
+				iterations = Math.max(1, Integer.parseInt(args[++i]));
+			}
+			else if (corpus == null && !args[i].startsWith("--")) {
+				corpus = new File(args[i]);
+			}
+			else {
+				System.err.println("Usage: BinarizerBenchmark "
+						+ "[--iterations N] [corpus directory]");
+				return;
+			}
+		}
+		Map<DecodeHintType, Object> hints = DecodeFormats.buildHints(null,
+				"UTF8");
+		printHeader();
+		if (corpus != null) {
+			runCorpus(corpus, hints);
+		}
+		else {
+			runSynthetic(iterations, hints);
+		}
+	}
+
+	private static void runCorpus(File corpus, Map<DecodeHintType, Object> hints)
+			throws Exception {
+		BinarizerBenchmark benchmark = new BinarizerBenchmark(hints);
+		LuminanceReader reader = new LuminanceReader();
+		int unreadable = 0;
+		for (Iterator<File> files = new ImageWalker(corpus); files.hasNext();) {
+			File file = files.next();
+			BufferedImage image = LuminanceReader.read(file);
+			if (image == null) {
+				unreadable++;
+				continue;
+			}
+			int width = image.getWidth();
+			int height = image.getHeight();
+			LuminanceSource frame = new PlanarYUVLuminanceSource(
+					reader.luminance(image), width, height, 0, 0, width,
+					height, false);
+			if (benchmark.frames == 0) {
+				benchmark.warmUp(frame);
+			}
+			benchmark.measure(frame);
+		}
+		benchmark.print(corpus.getName());
+		if (unreadable > 0) {
+			System.err.println("Skipped " + unreadable + " unreadable images");
+		}
+	}
+
+	private static void runSynthetic(int iterations,
+			Map<DecodeHintType, Object> hints) throws Exception {
+		for (int[] size : SIZES) {
+			BinarizerBenchmark benchmark = new BinarizerBenchmark(hints);
+			LuminanceSource frame = syntheticFrame(size[0], size[1]);
+			benchmark.warmUp(frame);
+			for (int i = 0; i < iterations; i++) {
+				benchmark.measure(frame);
+			}
+			benchmark.print(size[0] + "x" + size[1]);
+		}
+	}
+
+	private void warmUp(LuminanceSource frame) {
+		for (FrameDecoder decoder : decoders) {
+			for (int i = 0; i < WARMUP_DECODES; i++) {
+				decoder.decode(frame);
+			}
+		}
+	}
+
+	/**
+	 * 各算法依次解码同一帧
+	 */
+	private void measure(LuminanceSource frame) {
+		frames++;
+		for (int i = 0; i < types.length; i++) {
+			long start = System.nanoTime();
+			Result result = decoders[i].decode(frame);
+			nanos[i] += System.nanoTime() - start;
+			if (result != null) {
+				hits[i]++;
+			}
+		}
+	}
+
+	private static void printHeader() {
+		System.out.println(String.format(Locale.US,
+				"%-12s  %-9s  %6s  %6s  %6s  %9s  %9s", "corpus", "binarizer",
+				"frames", "hits", "rate", "ms/frame", "ms/hit"));
+	}
+
+	private void print(String name) {
+		for (int i = 0; i < types.length; i++) {
+			double millis = nanos[i] / 1e6;
+			System.out.println(String.format(Locale.US,
+					"%-12s  %-9s  %6d  %6d  %5.1f%%  %9.3f  %9s", name,
+					types[i], frames, hits[i], frames == 0 ? 0.0 : 100.0
+							* hits[i] / frames, frames == 0 ? 0.0 : millis
+							/ frames, hits[i] == 0 ? "-" : String.format(
+							Locale.US, "%.3f", millis / hits[i])));
+		}
+	}
+
+	/**
+	 * 二维码边长为短边的一半；亮度从左边的220逐渐降到右边的110，黑色模块为亮度的30%
+	 */
+	private static LuminanceSource syntheticFrame(int width, int height)
+			throws Exception {
+		int side = Math.min(width, height) / 2;
+		BitMatrix code = new MultiFormatWriter().encode(CONTENTS,
+				BarcodeFormat.QR_CODE, side, side);
+		int left = (width - code.getWidth()) / 2;
+		int top = (height - code.getHeight()) / 2;
+		Random random = new Random(width * 31 + height);
+		byte[] luminances = new byte[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int light = 220 - 110 * x / width;
+				int codeX = x - left;
+				int codeY = y - top;
+				if (codeX >= 0 && codeY >= 0 && codeX < code.getWidth()
+						&& codeY < code.getHeight() && code.get(codeX, codeY)) {
+					light = light * 3 / 10;
+				}
+				light += random.nextInt(17) - 8;
+				luminances[y * width + x] = (byte) Math.max(0,
+						Math.min(255, light));
+			}
+		}
+		return new PlanarYUVLuminanceSource(luminances, width, height, 0, 0,
+				width, height, false);
+	}
+}
@@ -0,0 +1,388 @@
+package com.google.zxing.cli;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.DaemonExecutors;
+import com.google.zxing.decode.BinarizerType;
+import com.google.zxing.decode.DecodeFormats;
+import com.google.zxing.decode.FrameDecoder;
+import com.google.zxing.decode.ResultCache;
+
+/**
+ * 命令行批量解码：遍历目录树，用ImageIO读取图片，按与BitmapDecoder相同的格式和hints并行解码，
+ * 每张图片输出一行JSON。
+ * <p>
+ * 解码流程是{@link FrameDecoder}的多尺度流程（一维码先按行解码，再缩小2倍或4倍粗解码、裁剪可疑区域、
+ * 最后全分辨率），而不是相册的BitmapDecoder：后者逐级降低inSampleSize和分块读取是为了在Android上
+ * 控制Bitmap的内存，这里ImageIO已经读入整幅图片，不需要。每张图片用新的解码器，缩小倍数不会从
+ * 之前的图片学习，结果与线程数和处理顺序无关。
+ * <p>
+ * 输出按遍历顺序写入，因此输出文件本身就是断点：加上--resume时统计其中完整的行数，
+ * 截掉最后不完整的一行，跳过对应数量的文件后继续追加。同时处理的图片数有上限，内存与文件总数无关。
+ * 加上--cache时按内容指纹缓存结果，重复扫描同样的文件只需计算指纹
+ *
+ * <pre>
+ * zxingcli [--threads N] [--output results.jsonl] [--resume] [--cache 目录] &lt;目录或文件&gt;
+ * </pre>
+ *
+ * @author hugo
+ *
+ */
+public final class BulkDecoder {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * 每个工作线程最多排队的图片数
+	 */
+	private static final int QUEUE_PER_THREAD = 4;
+
+	/**
+	 * 每写这么多行刷新一次输出
+	 */
+	private static final int FLUSH_INTERVAL = 256;
+
+	/**
+	 * 结果缓存：内存中保留的条数、磁盘中保留的条数、未找到条码的结果的有效期
+	 */
+	private static final int CACHE_MEMORY_ENTRIES = 4096;
+	private static final int CACHE_DISK_ENTRIES = 10 * 1000 * 1000;
+	private static final long CACHE_NEGATIVE_TTL = 24 * 60 * 60 * 1000L;
+
+	private final int threads;
+
+	/**
+	 * 可以为null
+	 */
+	private final ResultCache cache;
+
+	/**
+	 * 每个线程一份解码参数和行缓冲区
+	 */
+	private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+		@Override
+		protected Worker initialValue() {
+			return new Worker(cache);
+		}
+	};
+
+	private BulkDecoder(int threads, ResultCache cache) {
+		this.threads = threads;
+		this.cache = cache;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = Runtime.getRuntime().availableProcessors();
+		String output = null;
+		boolean resume = false;
+		String cacheDirectory = null;
+		String input = null;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if ("--threads".equals(arg) && i + 1 < args.length) {
+				threads = Math.max(1, Integer.parseInt(args[++i]));
+			}
+			else if ("--output".equals(arg) && i + 1 < args.length) {
+				output = args[++i];
+			}
+			else if ("--resume".equals(arg)) {
+				resume = true;
+			}
+			else if ("--cache".equals(arg) && i + 1 < args.length) {
+				cacheDirectory = args[++i];
+			}
+			else if (input == null && !arg.startsWith("--")) {
+				input = arg;
+			}
+			else {
+				printUsage();
+				return;
+			}
+		}
+		if (input == null || (resume && output == null)) {
+			printUsage();
+			return;
+		}
+
+		long skip = 0;
+		OutputStream out;
+		if (output != null) {
+			File outputFile = new File(output);
+			if (resume && outputFile.exists()) {
+				skip = truncateToCompleteLines(outputFile);
+			}
+			out = new FileOutputStream(outputFile, resume);
+		}
+		else {
+			out = System.out;
+		}
+
+		ResultCache cache = cacheDirectory == null ? null : new ResultCache(
+				CACHE_MEMORY_ENTRIES, new File(cacheDirectory),
+				CACHE_DISK_ENTRIES, CACHE_NEGATIVE_TTL);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8),
+				64 * 1024);
+		try {
+			long count = new BulkDecoder(threads, cache).run(new File(input), skip,
+					writer);
+			System.err.println("Processed " + count + " images, skipped "
+					+ skip);
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	private static void printUsage() {
+		System.err.println("Usage: zxingcli [--threads N] "
+				+ "[--output results.jsonl] [--resume] [--cache dir] "
+				+ "<directory or file>");
+		System.err.println("  --resume  continue after the last complete "
+				+ "line of --output");
+		System.err.println("  --cache   reuse results of identical images "
+				+ "across runs");
+	}
+
+	/**
+	 * 截掉最后一行不完整的输出（上次中断时写了一半）
+	 *
+	 * @return 完整的行数
+	 */
+	private static long truncateToCompleteLines(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			long lines = 0;
+			long end = 0;
+			long position = 0;
+			byte[] buffer = new byte[64 * 1024];
+			int count;
+			while ((count = raf.read(buffer)) != -1) {
+				for (int i = 0; i < count; i++) {
+					if (buffer[i] == '\n') {
+						lines++;
+						end = position + i + 1;
+					}
+				}
+				position += count;
+			}
+			raf.setLength(end);
+			return lines;
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * 遍历线程提交任务，调用线程按提交顺序取结果写出；队列满时遍历暂停，保证内存有界
+	 *
+	 * @return 本次处理的图片数
+	 */
+	private long run(File root, long skip, Writer writer)
+			throws IOException, InterruptedException {
+		ExecutorService executor = DaemonExecutors.newFixedThreadPool(
+				"BulkDecoder", threads);
+		final BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<Future<String>>(
+				threads * QUEUE_PER_THREAD);
+		Iterator<File> files = new ImageWalker(root);
+		for (long i = 0; i < skip && files.hasNext(); i++) {
+			files.next();
+		}
+
+		long count = 0;
+		try {
+			while (files.hasNext() || !pending.isEmpty()) {
+				// 先把队列填满，再按顺序取出最早的结果
+				while (files.hasNext() && pending.remainingCapacity() > 0) {
+					final File file = files.next();
+					pending.put(executor.submit(new Callable<String>() {
+						@Override
+						public String call() {
+							return workers.get().decode(file);
+						}
+					}));
+				}
+				String line;
+				try {
+					line = pending.take().get();
+				}
+				catch (ExecutionException e) {
+					// decode已处理所有异常，这里不会发生
+					throw new IllegalStateException(e.getCause());
+				}
+				writer.write(line);
+				writer.write('\n');
+				if (++count % FLUSH_INTERVAL == 0) {
+					writer.flush();
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return count;
+	}
+
+	private static final class Worker {
+
+		private final ResultCache cache;
+
+		private final Map<DecodeHintType, Object> hints = DecodeFormats
+				.buildHints(null, "UTF8");
+
+		private final LuminanceReader luminanceReader = new LuminanceReader();
+
+		Worker(ResultCache cache) {
+			this.cache = cache;
+		}
+
+		String decode(File file) {
+			long start = System.nanoTime();
+			long readMillis = 0;
+			try {
+				String key = null;
+				if (cache != null) {
+					key = cache.keyFor(file);
+					ResultCache.Entry entry = cache.get(key);
+					if (entry != null) {
+						return toJson(file, entry.getResult(),
+								elapsedMillis(start), 0, null);
+					}
+				}
+				BufferedImage image = LuminanceReader.read(file);
+				readMillis = elapsedMillis(start);
+				if (image == null) {
+					return toJson(file, null, readMillis, 0,
+							"Unsupported image");
+				}
+				long decodeStart = System.nanoTime();
+				int width = image.getWidth();
+				int height = image.getHeight();
+				// 工作线程已占满所有核，不再并行二值化
+				FrameDecoder decoder = new FrameDecoder(hints,
+						BinarizerType.HYBRID, true);
+				Result result = decoder.decode(
+						luminanceReader.luminance(image), width, height, 0);
+				if (key != null) {
+					cache.put(key, result);
+				}
+				return toJson(file, result, readMillis,
+						elapsedMillis(decodeStart), null);
+			}
+			catch (IOException e) {
+				return toJson(file, null, elapsedMillis(start), 0,
+						String.valueOf(e.getMessage()));
+			}
+			catch (RuntimeException e) {
+				return toJson(file, null, readMillis, 0, e.toString());
+			}
+			catch (OutOfMemoryError e) {
+				return toJson(file, null, readMillis, 0, e.toString());
+			}
+		}
+	}
+
+	private static long elapsedMillis(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1000000L;
+	}
+
+	/**
+	 * {"path":...,"format":...,"text":...,"points":[[x,y],...],"readMs":...,"decodeMs":...,"error":...}
+	 * ，未找到条码时format、text和points为null
+	 */
+	private static String toJson(File file, Result result, long readMillis,
+			long decodeMillis, String error) {
+		StringBuilder json = new StringBuilder(256);
+		json.append("{\"path\":");
+		appendString(json, file.getPath());
+		json.append(",\"format\":");
+		appendString(json, result == null ? null : result.getBarcodeFormat()
+				.toString());
+		json.append(",\"text\":");
+		appendString(json, result == null ? null : result.getText());
+		json.append(",\"points\":");
+		ResultPoint[] points = result == null ? null : result
+				.getResultPoints();
+		if (points == null) {
+			json.append("null");
+		}
+		else {
+			json.append('[');
+			boolean first = true;
+			for (ResultPoint point : points) {
+				if (point == null) {
+					continue;
+				}
+				if (!first) {
+					json.append(',');
+				}
+				first = false;
+				json.append('[').append(point.getX()).append(',')
+						.append(point.getY()).append(']');
+			}
+			json.append(']');
+		}
+		json.append(",\"readMs\":").append(readMillis);
+		json.append(",\"decodeMs\":").append(decodeMillis);
+		json.append(",\"error\":");
+		appendString(json, error);
+		json.append('}');
+		return json.toString();
+	}
+
+	private static void appendString(StringBuilder json, String value) {
+		if (value == null) {
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				json.append("\\\"");
+				break;
+			case '\\':
+				json.append("\\\\");
+				break;
+			case '\n':
+				json.append("\\n");
+				break;
+			case '\r':
+				json.append("\\r");
+				break;
+			case '\t':
+				json.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				}
+				else {
+					json.append(c);
+				}
+			}
+		}
+		json.append('"');
+	}
+}
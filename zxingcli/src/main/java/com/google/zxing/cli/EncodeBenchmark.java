@@ -0,0 +1,98 @@
+package com.google.zxing.cli;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Version;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.ParallelMaskEncoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import com.google.zxing.encode.EncodeHints;
+
+/**
+ * 比较原版Encoder与{@link ParallelMaskEncoder}在各个二维码版本上的编码耗时，并检查两者输出逐字节一致。
+ * 每个版本用刚好填满该版本的字节模式内容
+ *
+ * <pre>
+ * EncodeBenchmark [每个版本的迭代次数]
+ * </pre>
+ *
+ * @author hugo
+ *
+ */
+public final class EncodeBenchmark {
+
+	private static final int[] VERSIONS = { 1, 5, 10, 15, 20, 25, 30, 35, 40 };
+
+	private static final ErrorCorrectionLevel EC_LEVEL = ErrorCorrectionLevel.L;
+
+	private EncodeBenchmark() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		Map<EncodeHintType, Object> hints = EncodeHints.build(
+				BarcodeFormat.QR_CODE, EC_LEVEL, EncodeHints.DEFAULT_MARGIN,
+				"UTF-8");
+		System.out.println("version   stock ms  parallel ms  speedup  identical");
+		for (int target : VERSIONS) {
+			String content = payloadFor(target);
+			// 预热
+			for (int i = 0; i < Math.max(5, iterations / 5); i++) {
+				Encoder.encode(content, EC_LEVEL, hints);
+				ParallelMaskEncoder.encode(content, EC_LEVEL, hints);
+			}
+			QRCode stock = null;
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				stock = Encoder.encode(content, EC_LEVEL, hints);
+			}
+			double stockMillis = (System.nanoTime() - start) / 1e6 / iterations;
+			QRCode parallel = null;
+			start = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				parallel = ParallelMaskEncoder.encode(content, EC_LEVEL, hints);
+			}
+			double parallelMillis = (System.nanoTime() - start) / 1e6
+					/ iterations;
+			System.out.println(String.format(Locale.US,
+					"%7d  %9.3f  %11.3f  %6.2fx  %s", stock.getVersion()
+							.getVersionNumber(), stockMillis, parallelMillis,
+					stockMillis / parallelMillis, identical(stock, parallel)));
+		}
+	}
+
+	/**
+	 * 刚好填满目标版本的内容：字节模式，UTF-8下每个字符一个字节
+	 */
+	private static String payloadFor(int versionNumber) {
+		Version version = Version.getVersionForNumber(versionNumber);
+		int dataBytes = version.getTotalCodewords()
+				- version.getECBlocksForLevel(EC_LEVEL).getTotalECCodewords();
+		// 模式、ECI和长度字段约占3到4个字节
+		int length = dataBytes - 4;
+		Random random = new Random(versionNumber);
+		StringBuilder content = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			content.append((char) ('a' + random.nextInt(26)));
+		}
+		return content.toString();
+	}
+
+	private static boolean identical(QRCode a, QRCode b) {
+		if (a.getMaskPattern() != b.getMaskPattern()
+				|| a.getVersion() != b.getVersion()
+				|| a.getMode() != b.getMode()) {
+			return false;
+		}
+		ByteMatrix x = a.getMatrix();
+		ByteMatrix y = b.getMatrix();
+		return Arrays.deepEquals(x.getArray(), y.getArray());
+	}
+}
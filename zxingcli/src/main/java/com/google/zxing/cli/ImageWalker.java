@@ -0,0 +1,95 @@
+package com.google.zxing.cli;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * 按文件名排序、深度优先遍历目录树中的图片文件。顺序是确定的，断点续传时跳过已处理的前N个文件即可；
+ * 同一时刻只保存当前路径上各层目录的列表，内存与文件总数无关
+ *
+ * @author hugo
+ *
+ */
+final class ImageWalker implements Iterator<File> {
+
+	private static final List<String> IMAGE_EXTENSIONS = Arrays.asList("jpg",
+			"jpeg", "png", "bmp", "gif", "wbmp");
+
+	/**
+	 * 各层目录中尚未访问的条目
+	 */
+	private final Deque<Iterator<File>> stack = new ArrayDeque<Iterator<File>>();
+
+	private File next;
+
+	ImageWalker(File root) {
+		if (root.isDirectory()) {
+			stack.push(list(root));
+		}
+		else {
+			stack.push(Arrays.asList(root).iterator());
+		}
+		advance();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	@Override
+	public File next() {
+		if (next == null) {
+			throw new NoSuchElementException();
+		}
+		File result = next;
+		advance();
+		return result;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private void advance() {
+		next = null;
+		while (!stack.isEmpty()) {
+			Iterator<File> entries = stack.peek();
+			if (!entries.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			File file = entries.next();
+			if (file.isDirectory()) {
+				stack.push(list(file));
+			}
+			else if (isImage(file.getName())) {
+				next = file;
+				return;
+			}
+		}
+	}
+
+	private static Iterator<File> list(File directory) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return Arrays.<File> asList().iterator();
+		}
+		Arrays.sort(files);
+		return Arrays.asList(files).iterator();
+	}
+
+	private static boolean isImage(String name) {
+		int dot = name.lastIndexOf('.');
+		return dot >= 0
+				&& IMAGE_EXTENSIONS.contains(name.substring(dot + 1)
+						.toLowerCase(Locale.ENGLISH));
+	}
+}
@@ -0,0 +1,69 @@
+package com.google.zxing.cli;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * 用ImageIO读取图片并转换为亮度平面，与BitmapLuminanceSource相同：按0.299R + 0.587G + 0.114B计算亮度，
+ * 半透明像素与白色背景合成。复用行缓冲区，不是线程安全的，每个线程一个实例
+ *
+ * @author hugo
+ *
+ */
+final class LuminanceReader {
+
+	private int[] rowBuffer = new int[0];
+
+	/**
+	 * @return 不支持的格式返回null
+	 */
+	static BufferedImage read(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return ImageIO.read(in);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return width * height字节的亮度平面
+	 */
+	byte[] luminance(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		byte[] luminances = new byte[width * height];
+		if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+			image.getRaster().getDataElements(0, 0, width, height, luminances);
+			return luminances;
+		}
+		if (rowBuffer.length < width) {
+			rowBuffer = new int[width];
+		}
+		int[] row = rowBuffer;
+		for (int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				int argb = row[x];
+				int r = (argb >> 16) & 0xff;
+				int g = (argb >> 8) & 0xff;
+				int b = argb & 0xff;
+				int luminance = (77 * r + 150 * g + 29 * b) >> 8;
+				int alpha = argb >>> 24;
+				if (alpha != 0xff) {
+					luminance = (luminance * alpha + 255 * (255 - alpha)) / 255;
+				}
+				luminances[offset + x] = (byte) luminance;
+			}
+		}
+		return luminances;
+	}
+}
@@ -0,0 +1,155 @@
+package com.google.zxing.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 磁盘缓存目录：每个条目一个以键命名的小文件，先写临时文件再改名，其他线程不会读到写了一半的内容；
+ * 条目数超出上限时按修改时间删除最旧的，读到时更新修改时间即可让常用的条目保留得更久。
+ * 解码结果缓存和条码图片缓存共用。线程安全
+ *
+ * @author hugo
+ *
+ */
+public final class CacheDirectory {
+
+	private final File directory;
+
+	private final int maxEntries;
+
+	private int writes;
+
+	/**
+	 * @param directory
+	 *            缓存目录，不存在时创建
+	 * @param maxEntries
+	 *            保留的条目数
+	 */
+	public CacheDirectory(File directory, int maxEntries) {
+		this.directory = directory;
+		this.maxEntries = maxEntries;
+		directory.mkdirs();
+	}
+
+	/**
+	 * @return 键对应的文件，可能不存在
+	 */
+	public File file(String key) {
+		return new File(directory, key);
+	}
+
+	public void delete(String key) {
+		file(key).delete();
+	}
+
+	/**
+	 * 写入一个条目，失败时忽略：磁盘缓存只是优化
+	 *
+	 * @param bytes
+	 *            条目的全部内容
+	 */
+	public void write(String key, ByteArrayOutputStream bytes) {
+		try {
+			File temp = File.createTempFile(key, ".tmp", directory);
+			FileOutputStream out = new FileOutputStream(temp);
+			try {
+				bytes.writeTo(out);
+			}
+			finally {
+				out.close();
+			}
+			File target = file(key);
+			if (!temp.renameTo(target)) {
+				target.delete();
+				if (!temp.renameTo(target)) {
+					temp.delete();
+				}
+			}
+		}
+		catch (IOException e) {
+			return;
+		}
+		trimIfNeeded();
+	}
+
+	/**
+	 * 每写入一定数量的条目检查一次，超出上限时按修改时间删除最旧的
+	 */
+	private void trimIfNeeded() {
+		synchronized (this) {
+			if (++writes < Math.max(16, maxEntries / 10)) {
+				return;
+			}
+			writes = 0;
+		}
+		File[] files = directory.listFiles();
+		if (files == null || files.length <= maxEntries) {
+			return;
+		}
+		final long[] modified = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		for (int i = 0; i < files.length; i++) {
+			modified[i] = files[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return modified[a] < modified[b] ? -1
+						: modified[a] == modified[b] ? 0 : 1;
+			}
+		});
+		for (int i = 0; i < files.length - maxEntries; i++) {
+			files[order[i]].delete();
+		}
+	}
+
+	public static MessageDigest newSha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return 字符串按UTF-8编码后的SHA-1，十六进制小写，可用作文件名
+	 */
+	public static String sha1Hex(String key) {
+		try {
+			return toHex(newSha1().digest(key.getBytes("UTF-8")));
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	public static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			}
+			catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+}
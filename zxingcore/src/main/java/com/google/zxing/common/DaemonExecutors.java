@@ -0,0 +1,72 @@
+package com.google.zxing.common;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台线程池的统一创建方式：线程为守护线程，不会阻止进程退出；按“名字-序号”命名，便于在线程转储中辨认
+ *
+ * @author hugo
+ *
+ */
+public final class DaemonExecutors {
+
+	private DaemonExecutors() {
+	}
+
+	/**
+	 * @return 创建名为“name-1”、“name-2”……的守护线程
+	 */
+	public static ThreadFactory threadFactory(final String name) {
+		return new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + "-"
+						+ count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	public static ExecutorService newFixedThreadPool(String name, int threads) {
+		return Executors.newFixedThreadPool(threads, threadFactory(name));
+	}
+
+	public static ExecutorService newSingleThreadExecutor(String name) {
+		return Executors.newSingleThreadExecutor(threadFactory(name));
+	}
+
+	/**
+	 * 第一次使用时才创建的固定大小线程池，用作类中共享的静态线程池，之后一直保留。线程安全
+	 */
+	public static final class Lazy {
+
+		private final String name;
+
+		private final int threads;
+
+		private ExecutorService executor;
+
+		/**
+		 * @param threads
+		 *            线程数，为1时是单线程的
+		 */
+		public Lazy(String name, int threads) {
+			this.name = name;
+			this.threads = threads;
+		}
+
+		public synchronized ExecutorService get() {
+			if (executor == null) {
+				executor = threads == 1 ? newSingleThreadExecutor(name)
+						: newFixedThreadPool(name, threads);
+			}
+			return executor;
+		}
+	}
+}
@@ -0,0 +1,360 @@
+package com.google.zxing.decode;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+
+/**
+ * 自适应裁剪的帧解码：平时只解码扫描框；连续若干帧没有结果时，把整个画面缩小后解码一次，
+ * 码在扫描框外时把裁剪区域移向（必要时扩大到能容纳）它，码回到扫描框内后恢复为扫描框。
+ * 用户对不准时不必重新瞄准。不是线程安全的，每个线程一个实例
+ *
+ * @author hugo
+ *
+ */
+public final class AdaptiveCropDecoder {
+
+	/**
+	 * 默认连续多少帧没有结果后解码一次整个画面，预览约每秒10帧
+	 */
+	public static final int DEFAULT_MISSES_BEFORE_FULL_FRAME = 10;
+
+	/**
+	 * 整个画面先按此倍数缩小再解码
+	 */
+	private static final int FULL_FRAME_SCALE = 2;
+
+	/**
+	 * 至少要有这么多模块大小一致、彼此靠近的定位图形才移动裁剪区域，少于此数时当作画面中没有码
+	 */
+	private static final int MIN_STEER_POINTS = 3;
+
+	/**
+	 * 同一个码的定位图形之间模块大小的最大相对差别
+	 */
+	private static final float MODULE_SIZE_TOLERANCE = 0.3f;
+
+	/**
+	 * 同一个码的定位图形之间的最大距离（模块数），版本40的二维码边长为177个模块
+	 */
+	private static final int MAX_CODE_MODULES = 180;
+
+	/**
+	 * 移动后的裁剪区域的面积最多为扫描框的这么多倍，避免误检的点把裁剪区域撑得太大
+	 */
+	private static final int MAX_STEER_AREA_FACTOR = 4;
+
+	private static final int MAX_POSSIBLE_POINTS = 64;
+
+	/**
+	 * 移动后的裁剪区域在码的外接矩形之外留出的边距，按外接矩形边长的比例
+	 */
+	private static final float STEER_MARGIN = 0.25f;
+
+	private static final int MIN_STEER_PADDING = 16;
+
+	private final FrameDecoder cropDecoder;
+
+	private final FrameDecoder fullFrameDecoder;
+
+	/**
+	 * 把裁剪区域中的可疑点换算成相对扫描框的坐标再转发给界面，没有界面回调时为null
+	 */
+	private final OffsetCallback offsetCallback;
+
+	/**
+	 * 解码整个画面时找到的带模块大小的可疑点，坐标相对于缩小后的画面
+	 */
+	private final List<ResultPoint> possiblePoints = new ArrayList<ResultPoint>();
+
+	private final int missesBeforeFullFrame;
+
+	private int misses;
+
+	/**
+	 * 移向扫描框外的码之后的裁剪区域{left, top, right, bottom}，使用扫描框时为null
+	 */
+	private int[] steeredCrop;
+
+	private PlanarYUVLuminanceSource lastSource;
+
+	/**
+	 * @param hints
+	 *            解码参数，可由{@link DecodeFormats#buildHints}构造；其中的结果点回调收到的坐标相对于扫描框
+	 * @param binarizerType
+	 *            二值化算法
+	 * @param tiered
+	 *            是否先按行解码一维码，再计算整幅图像的二值化矩阵
+	 * @param missesBeforeFullFrame
+	 *            连续多少帧没有结果后解码一次整个画面，不大于0时只解码扫描框
+	 */
+	public AdaptiveCropDecoder(Map<DecodeHintType, Object> hints,
+			BinarizerType binarizerType, boolean tiered,
+			int missesBeforeFullFrame) {
+		this.missesBeforeFullFrame = missesBeforeFullFrame;
+
+		ResultPointCallback delegate = (ResultPointCallback) hints
+				.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+		Map<DecodeHintType, Object> cropHints = hints;
+		if (delegate != null) {
+			offsetCallback = new OffsetCallback(delegate);
+			cropHints = new EnumMap<DecodeHintType, Object>(hints);
+			cropHints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK,
+					offsetCallback);
+		}
+		else {
+			offsetCallback = null;
+		}
+		cropDecoder = new FrameDecoder(cropHints, binarizerType, tiered);
+
+		if (missesBeforeFullFrame > 0) {
+			Map<DecodeHintType, Object> fullFrameHints = new EnumMap<DecodeHintType, Object>(
+					hints);
+			fullFrameHints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK,
+					new ResultPointCallback() {
+						@Override
+						public void foundPossibleResultPoint(ResultPoint point) {
+							// 没有模块大小的点多是一维码扫描线上的零散点，纹理丰富的画面中到处都是
+							if (possiblePoints.size() < MAX_POSSIBLE_POINTS
+									&& SizedResultPoint.moduleSize(point) > 0) {
+								possiblePoints.add(point);
+							}
+						}
+					});
+			fullFrameDecoder = new FrameDecoder(fullFrameHints,
+					binarizerType, tiered);
+		}
+		else {
+			fullFrameDecoder = null;
+		}
+	}
+
+	/**
+	 * 解码一帧
+	 *
+	 * @param luminances
+	 *            已旋转好的亮度平面，只使用前width * height字节
+	 * @param framingRect
+	 *            扫描框在画面中的位置{left, top, right, bottom}
+	 * @return 结果点坐标相对于{@link #getLastSource()}；未找到返回null
+	 */
+	public Result decode(byte[] luminances, int width, int height,
+			int[] framingRect) {
+		int[] tight = clip(framingRect, width, height);
+		int[] crop = steeredCrop != null ? clip(steeredCrop, width, height)
+				: tight;
+		if (offsetCallback != null) {
+			offsetCallback.setOffset(crop[0] - tight[0], crop[1] - tight[1]);
+		}
+		PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(
+				luminances, width, height, crop[0], crop[1], crop[2]
+						- crop[0], crop[3] - crop[1], false);
+		lastSource = source;
+
+		Result result = cropDecoder.decode(source);
+		if (result != null) {
+			misses = 0;
+			steer(result.getResultPoints(), 1, crop[0], crop[1], tight,
+					width, height);
+			return result;
+		}
+		if (fullFrameDecoder == null || ++misses < missesBeforeFullFrame) {
+			return null;
+		}
+
+		// 扫描框里一直没有：看一眼整个画面
+		misses = 0;
+		PlanarYUVLuminanceSource fullFrame = new PlanarYUVLuminanceSource(
+				luminances, width, height, 0, 0, width, height, false);
+		possiblePoints.clear();
+		result = fullFrameDecoder.decode(new DownscaledLuminanceSource(
+				fullFrame, FULL_FRAME_SCALE));
+		if (result != null) {
+			result = MultiScaleDecoder.transform(result, FULL_FRAME_SCALE, 0,
+					0);
+			lastSource = fullFrame;
+			steer(result.getResultPoints(), 1, 0, 0, tight, width, height);
+			return result;
+		}
+		ResultPoint[] cluster = findCluster(possiblePoints);
+		if (cluster != null) {
+			// 看到了码但太小解不出来，移过去按全分辨率解码
+			steer(cluster, FULL_FRAME_SCALE, 0, 0, tight, width, height);
+		}
+		else {
+			steeredCrop = null;
+		}
+		return null;
+	}
+
+	/**
+	 * @return 上一次解码所用的画面：扫描框、移动后的裁剪区域或整个画面，可用来生成缩略图
+	 */
+	public PlanarYUVLuminanceSource getLastSource() {
+		return lastSource;
+	}
+
+	/**
+	 * @return 当前的裁剪区域{left, top, right, bottom}，使用扫描框时为null
+	 */
+	public int[] getSteeredCrop() {
+		return steeredCrop == null ? null : steeredCrop.clone();
+	}
+
+	/**
+	 * 找出模块大小一致、彼此靠近的可疑点最多的一组，即最可能属于同一个码的定位图形
+	 *
+	 * @return 少于{@link #MIN_STEER_POINTS}个时为null
+	 */
+	private static ResultPoint[] findCluster(List<ResultPoint> points) {
+		int count = points.size();
+		if (count < MIN_STEER_POINTS) {
+			return null;
+		}
+		float[] sizes = new float[count];
+		for (int i = 0; i < count; i++) {
+			sizes[i] = SizedResultPoint.moduleSize(points.get(i));
+		}
+		int bestSeed = -1;
+		int bestCount = MIN_STEER_POINTS - 1;
+		for (int i = 0; i < count; i++) {
+			int members = 0;
+			for (int j = 0; j < count; j++) {
+				if (inCluster(points, sizes, i, j)) {
+					members++;
+				}
+			}
+			if (members > bestCount) {
+				bestSeed = i;
+				bestCount = members;
+			}
+		}
+		if (bestSeed < 0) {
+			return null;
+		}
+		ResultPoint[] cluster = new ResultPoint[bestCount];
+		for (int j = 0, k = 0; j < count; j++) {
+			if (inCluster(points, sizes, bestSeed, j)) {
+				cluster[k++] = points.get(j);
+			}
+		}
+		return cluster;
+	}
+
+	private static boolean inCluster(List<ResultPoint> points, float[] sizes,
+			int seed, int index) {
+		float size = sizes[seed];
+		return Math.abs(sizes[index] - size) <= size * MODULE_SIZE_TOLERANCE
+				&& ResultPoint.distance(points.get(seed), points.get(index)) <= size
+						* MAX_CODE_MODULES;
+	}
+
+	/**
+	 * 码完全在扫描框内时恢复为扫描框，否则把裁剪区域以码为中心移过去，放不下时扩大，
+	 * 但面积不超过扫描框的{@link #MAX_STEER_AREA_FACTOR}倍
+	 *
+	 * @param points
+	 *            坐标乘以scale再加上left、top后为画面坐标
+	 */
+	private void steer(ResultPoint[] points, int scale, int left, int top,
+			int[] tight, int width, int height) {
+		if (points == null) {
+			return;
+		}
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		for (ResultPoint point : points) {
+			if (point == null) {
+				continue;
+			}
+			float x = point.getX() * scale + left;
+			float y = point.getY() * scale + top;
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+		}
+		if (minX > maxX) {
+			return;
+		}
+		if (minX >= tight[0] && minY >= tight[1] && maxX < tight[2]
+				&& maxY < tight[3]) {
+			steeredCrop = null;
+			return;
+		}
+
+		float padding = Math.max(MIN_STEER_PADDING,
+				Math.max(maxX - minX, maxY - minY) * STEER_MARGIN);
+		int tightWidth = tight[2] - tight[0];
+		int tightHeight = tight[3] - tight[1];
+		int cropWidth = Math.min(width, Math.max(tightWidth,
+				(int) (maxX - minX + 2 * padding)));
+		int cropHeight = Math.min(height, Math.max(tightHeight,
+				(int) (maxY - minY + 2 * padding)));
+		long maxArea = (long) MAX_STEER_AREA_FACTOR * tightWidth * tightHeight;
+		if ((long) cropWidth * cropHeight > maxArea) {
+			// 按比例缩小，仍以码为中心
+			double shrink = Math.sqrt((double) maxArea
+					/ ((long) cropWidth * cropHeight));
+			cropWidth = Math.max(1, (int) (cropWidth * shrink));
+			cropHeight = Math.max(1, (int) (cropHeight * shrink));
+		}
+		int cropLeft = clamp((int) ((minX + maxX - cropWidth) / 2), 0, width
+				- cropWidth);
+		int cropTop = clamp((int) ((minY + maxY - cropHeight) / 2), 0, height
+				- cropHeight);
+		steeredCrop = new int[] { cropLeft, cropTop, cropLeft + cropWidth,
+				cropTop + cropHeight };
+	}
+
+	private static int[] clip(int[] rect, int width, int height) {
+		int left = clamp(rect[0], 0, width - 1);
+		int top = clamp(rect[1], 0, height - 1);
+		return new int[] { left, top, clamp(rect[2], left + 1, width),
+				clamp(rect[3], top + 1, height) };
+	}
+
+	private static int clamp(int value, int min, int max) {
+		return value < min ? min : value > max ? max : value;
+	}
+
+	/**
+	 * 裁剪区域移动后，界面上的可疑点仍按相对扫描框的坐标绘制
+	 */
+	private static final class OffsetCallback implements ResultPointCallback {
+
+		private final ResultPointCallback delegate;
+
+		private int dx;
+		private int dy;
+
+		OffsetCallback(ResultPointCallback delegate) {
+			this.delegate = delegate;
+		}
+
+		void setOffset(int dx, int dy) {
+			this.dx = dx;
+			this.dy = dy;
+		}
+
+		@Override
+		public void foundPossibleResultPoint(ResultPoint point) {
+			if (dx == 0 && dy == 0) {
+				delegate.foundPossibleResultPoint(point);
+			}
+			else {
+				delegate.foundPossibleResultPoint(SizedResultPoint.transform(
+						point, 1, dx, dy));
+			}
+		}
+	}
+}
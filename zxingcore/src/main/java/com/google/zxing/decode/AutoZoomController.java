@@ -0,0 +1,197 @@
+package com.google.zxing.decode;
+
+import java.util.Arrays;
+
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+
+/**
+ * 根据可疑点估计的模块大小自动变焦：连续几帧都看到了码、但模块太小解不出来时，把变焦调大一档，
+ * 直到模块大小足够；解码成功后恢复为开始时的变焦级别。只做决定，由调用方把返回的变焦级别交给相机。
+ * 用户手动变焦后不再自动变焦。可疑点和每帧的结果应来自同一个解码线程
+ *
+ * @author hugo
+ *
+ */
+public final class AutoZoomController implements ResultPointCallback {
+
+	/**
+	 * 不需要改变变焦
+	 */
+	public static final int NO_CHANGE = -1;
+
+	/**
+	 * 模块边长小于此像素数时认为码太小
+	 */
+	private static final float MIN_MODULE_SIZE = 2.5f;
+
+	/**
+	 * 变焦后希望达到的模块边长
+	 */
+	private static final float TARGET_MODULE_SIZE = 4.0f;
+
+	/**
+	 * 一次最多放大的倍数，估计不准时不至于一下子放得太大
+	 */
+	private static final float MAX_STEP_FACTOR = 2.0f;
+
+	/**
+	 * 连续这么多帧都太小才变焦，避免偶然的误检
+	 */
+	private static final int SMALL_FRAMES_BEFORE_ZOOM = 3;
+
+	/**
+	 * 变焦后等这么多帧再判断，让相机和对焦稳定下来
+	 */
+	private static final int SETTLE_FRAMES = 3;
+
+	private static final int MAX_SIZES_PER_FRAME = 32;
+
+	/**
+	 * 各变焦级别的放大倍数，以百分数表示，下标即变焦级别
+	 */
+	private final int[] zoomRatios;
+
+	/**
+	 * 当前帧中各定位图形的模块大小
+	 */
+	private final float[] frameSizes = new float[MAX_SIZES_PER_FRAME];
+
+	private int frameSizeCount;
+
+	/**
+	 * 解码成功后恢复到的变焦级别
+	 */
+	private final int baseZoom;
+
+	private int zoom;
+
+	/**
+	 * 用户手动变过焦
+	 */
+	private boolean manual;
+
+	private int smallFrames;
+
+	private int settleFrames;
+
+	/**
+	 * 相机当前不变焦
+	 *
+	 * @see #AutoZoomController(int[], int)
+	 */
+	public AutoZoomController(int[] zoomRatios) {
+		this(zoomRatios, 0);
+	}
+
+	/**
+	 * @param zoomRatios
+	 *            相机各变焦级别的放大倍数（百分数，第一个为100），即Camera.Parameters.getZoomRatios()
+	 * @param currentZoom
+	 *            相机当前的变焦级别，即Camera.Parameters.getZoom()
+	 * @throws IllegalArgumentException
+	 *             zoomRatios为空
+	 */
+	public AutoZoomController(int[] zoomRatios, int currentZoom) {
+		if (zoomRatios.length == 0) {
+			throw new IllegalArgumentException("No zoom ratios");
+		}
+		this.zoomRatios = zoomRatios.clone();
+		baseZoom = Math.max(0, Math.min(zoomRatios.length - 1, currentZoom));
+		zoom = baseZoom;
+	}
+
+	/**
+	 * 用户手动把相机调到了zoom级别，此后不再自动变焦，免得和用户的选择相互覆盖
+	 */
+	public synchronized void onManualZoom(int zoom) {
+		this.zoom = zoom;
+		manual = true;
+		frameSizeCount = 0;
+		smallFrames = 0;
+	}
+
+	/**
+	 * 记录可疑点中的模块大小，没有模块大小的点忽略
+	 */
+	@Override
+	public synchronized void foundPossibleResultPoint(ResultPoint point) {
+		float moduleSize = SizedResultPoint.moduleSize(point);
+		if (moduleSize > 0 && frameSizeCount < frameSizes.length) {
+			frameSizes[frameSizeCount++] = moduleSize;
+		}
+	}
+
+	/**
+	 * 一帧解码失败
+	 *
+	 * @return 应设置的变焦级别，不需要改变时为{@link #NO_CHANGE}
+	 */
+	public synchronized int onDecodeFailed() {
+		float moduleSize = takeFrameModuleSize();
+		if (manual) {
+			return NO_CHANGE;
+		}
+		if (settleFrames > 0) {
+			settleFrames--;
+			return NO_CHANGE;
+		}
+		if (moduleSize <= 0 || moduleSize >= MIN_MODULE_SIZE) {
+			// 没看到码，或者码不小，变焦帮不上忙
+			smallFrames = 0;
+			return NO_CHANGE;
+		}
+		if (++smallFrames < SMALL_FRAMES_BEFORE_ZOOM
+				|| zoom >= zoomRatios.length - 1) {
+			return NO_CHANGE;
+		}
+		smallFrames = 0;
+
+		float factor = Math.min(MAX_STEP_FACTOR, TARGET_MODULE_SIZE
+				/ moduleSize);
+		float targetRatio = zoomRatios[zoom] * factor;
+		int next = zoom + 1;
+		while (next < zoomRatios.length - 1 && zoomRatios[next] < targetRatio) {
+			next++;
+		}
+		return setZoom(next);
+	}
+
+	/**
+	 * 一帧解码成功
+	 *
+	 * @return 应设置的变焦级别，不需要改变时为{@link #NO_CHANGE}
+	 */
+	public synchronized int onDecodeSucceeded() {
+		frameSizeCount = 0;
+		smallFrames = 0;
+		return manual || zoom == baseZoom ? NO_CHANGE : setZoom(baseZoom);
+	}
+
+	/**
+	 * @return 最近一次决定的变焦级别
+	 */
+	public synchronized int getZoom() {
+		return zoom;
+	}
+
+	private int setZoom(int newZoom) {
+		zoom = newZoom;
+		settleFrames = SETTLE_FRAMES;
+		return newZoom;
+	}
+
+	/**
+	 * @return 当前帧中模块大小的中位数，没有时为0；同时清空当前帧
+	 */
+	private float takeFrameModuleSize() {
+		int count = frameSizeCount;
+		frameSizeCount = 0;
+		if (count == 0) {
+			return 0;
+		}
+		// 取中位数，不受个别误检的影响
+		Arrays.sort(frameSizes, 0, count);
+		return frameSizes[count / 2];
+	}
+}
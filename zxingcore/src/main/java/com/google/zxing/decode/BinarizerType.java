@@ -0,0 +1,58 @@
+package com.google.zxing.decode;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * 可选的二值化算法
+ *
+ * @author hugo
+ *
+ */
+public enum BinarizerType {
+
+	/** zxing自带的分块阈值二值化，每帧重新分配缓冲区 */
+	HYBRID {
+		@Override
+		public Binarizer create(LuminanceSource source) {
+			return new HybridBinarizer(source);
+		}
+	},
+	/** 基于积分图的自适应二值化，按线程复用缓冲区 */
+	INTEGRAL {
+		@Override
+		public Binarizer create(LuminanceSource source) {
+			return new IntegralImageBinarizer(source);
+		}
+	},
+	/** 与HYBRID结果一致，大图按条带并行计算 */
+	PARALLEL {
+		@Override
+		public Binarizer create(LuminanceSource source) {
+			return new ParallelHybridBinarizer(source);
+		}
+	};
+
+	/**
+	 * 为source创建二值化器，每帧一个
+	 */
+	public abstract Binarizer create(LuminanceSource source);
+
+	/**
+	 * @param typeString
+	 *            枚举名，为null或不是已知的算法（如旧版本保存的设置）时返回HYBRID
+	 */
+	public static BinarizerType parse(String typeString) {
+		if (typeString == null) {
+			return HYBRID;
+		}
+		try {
+			return valueOf(typeString);
+		}
+		catch (IllegalArgumentException e) {
+			return HYBRID;
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.google.zxing.decode;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+
+/**
+ * 各类条码格式的集合以及解码参数的构造，不依赖Android
+ *
+ * @author hugo
+ *
+ */
+public final class DecodeFormats {
+
+	public static final Collection<BarcodeFormat> PRODUCT_FORMATS;
+	public static final Collection<BarcodeFormat> ONE_D_FORMATS;
+	public static final Collection<BarcodeFormat> QR_CODE_FORMATS = Collections
+			.unmodifiableSet(EnumSet.of(BarcodeFormat.QR_CODE));
+	public static final Collection<BarcodeFormat> DATA_MATRIX_FORMATS = Collections
+			.unmodifiableSet(EnumSet.of(BarcodeFormat.DATA_MATRIX));
+	static {
+		EnumSet<BarcodeFormat> product = EnumSet.of(BarcodeFormat.UPC_A,
+				BarcodeFormat.UPC_E, BarcodeFormat.EAN_13, BarcodeFormat.EAN_8,
+				BarcodeFormat.RSS_14, BarcodeFormat.RSS_EXPANDED);
+		EnumSet<BarcodeFormat> oneD = EnumSet.of(BarcodeFormat.CODE_39,
+				BarcodeFormat.CODE_93, BarcodeFormat.CODE_128,
+				BarcodeFormat.ITF, BarcodeFormat.CODABAR);
+		oneD.addAll(product);
+		PRODUCT_FORMATS = Collections.unmodifiableSet(product);
+		ONE_D_FORMATS = Collections.unmodifiableSet(oneD);
+	}
+
+	private DecodeFormats() {
+	}
+
+	/**
+	 * 构造解码参数
+	 *
+	 * @param formats
+	 *            可以解析的编码类型，为null或空时支持一维码、二维码和Data Matrix
+	 * @param characterSet
+	 *            字符编码，可以为null
+	 * @return 可修改的hints
+	 */
+	public static Map<DecodeHintType, Object> buildHints(
+			Collection<BarcodeFormat> formats, String characterSet) {
+		Collection<BarcodeFormat> decodeFormats = EnumSet
+				.noneOf(BarcodeFormat.class);
+		if (formats == null || formats.isEmpty()) {
+			decodeFormats.addAll(ONE_D_FORMATS);
+			decodeFormats.addAll(QR_CODE_FORMATS);
+			decodeFormats.addAll(DATA_MATRIX_FORMATS);
+		}
+		else {
+			decodeFormats.addAll(formats);
+		}
+		Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(
+				DecodeHintType.class);
+		hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
+		if (characterSet != null) {
+			hints.put(DecodeHintType.CHARACTER_SET, characterSet);
+		}
+		return hints;
+	}
+}
@@ -0,0 +1,77 @@
+package com.google.zxing.decode;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * 将另一个LuminanceSource按整数倍做盒式滤波（box filter）缩小，每个输出像素是factor x
+ * factor个输入像素的平均值。用于大扫描框下先以低分辨率快速尝试解码
+ *
+ * @author hugo
+ *
+ */
+final class DownscaledLuminanceSource extends LuminanceSource {
+
+	private final int factor;
+
+	private final byte[] pixels;
+
+	DownscaledLuminanceSource(LuminanceSource source, int factor) {
+		super(source.getWidth() / factor, source.getHeight() / factor);
+		this.factor = factor;
+
+		int width = getWidth();
+		int height = getHeight();
+		int srcWidth = source.getWidth();
+		int area = factor * factor;
+
+		pixels = new byte[width * height];
+		int[] sums = new int[width];
+		byte[] srcRow = new byte[srcWidth];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				sums[x] = 0;
+			}
+			for (int dy = 0; dy < factor; dy++) {
+				srcRow = source.getRow(y * factor + dy, srcRow);
+				int srcX = 0;
+				for (int x = 0; x < width; x++) {
+					int sum = 0;
+					for (int dx = 0; dx < factor; dx++) {
+						sum += srcRow[srcX++] & 0xff;
+					}
+					sums[x] += sum;
+				}
+			}
+			int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				pixels[offset + x] = (byte) (sums[x] / area);
+			}
+		}
+	}
+
+	/**
+	 * 缩小倍数，结果点坐标需乘以该值才能映射回原图
+	 */
+	int getFactor() {
+		return factor;
+	}
+
+	@Override
+	public byte[] getRow(int y, byte[] row) {
+		if (y < 0 || y >= getHeight()) {
+			throw new IllegalArgumentException(
+					"Requested row is outside the image: " + y);
+		}
+		int width = getWidth();
+		if (row == null || row.length < width) {
+			row = new byte[width];
+		}
+		System.arraycopy(pixels, y * width, row, 0, width);
+		return row;
+	}
+
+	@Override
+	public byte[] getMatrix() {
+		return pixels;
+	}
+}
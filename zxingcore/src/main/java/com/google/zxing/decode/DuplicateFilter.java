@@ -0,0 +1,88 @@
+package com.google.zxing.decode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.zxing.Result;
+
+/**
+ * 连续扫描时过滤重复结果：内容和格式都相同、且距上次看到不超过时间窗口的结果视为重复。
+ * 每次看到都会刷新时间，条码一直留在画面中时不会重复报告，移开超过窗口后再扫才算新的。
+ * 条数有上限，超出时淘汰最久未见的；过期的条目在查询时顺带清除。线程安全
+ *
+ * @author hugo
+ *
+ */
+public final class DuplicateFilter {
+
+	/**
+	 * 时间窗口取此值时，同一条码在整个扫描过程中只报告一次
+	 */
+	public static final long FOREVER = Long.MAX_VALUE;
+
+	private final long windowMillis;
+
+	/**
+	 * 按最近看到的时间排序，最早的在前
+	 */
+	private final LinkedHashMap<String, Long> lastSeen;
+
+	/**
+	 * @param maxEntries
+	 *            记住的条码数
+	 * @param windowMillis
+	 *            时间窗口，{@link #FOREVER}表示不过期
+	 */
+	public DuplicateFilter(final int maxEntries, long windowMillis) {
+		this.windowMillis = windowMillis;
+		lastSeen = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * 记录这次看到的结果。按单调时钟计时，修改系统时间不会让结果提前过期或一直算作重复
+	 *
+	 * @return 是新的结果时返回true，重复时返回false
+	 */
+	public boolean accept(Result result) {
+		return accept(result, System.nanoTime() / 1000000L);
+	}
+
+	/**
+	 * @param now
+	 *            单调时钟的毫秒数，只用于相互比较
+	 */
+	synchronized boolean accept(Result result, long now) {
+		purgeExpired(now);
+		String key = result.getBarcodeFormat() + "\n" + result.getText();
+		Long previous = lastSeen.put(key, now);
+		return previous == null || now - previous > windowMillis;
+	}
+
+	public synchronized void clear() {
+		lastSeen.clear();
+	}
+
+	public synchronized int size() {
+		return lastSeen.size();
+	}
+
+	private void purgeExpired(long now) {
+		if (windowMillis == FOREVER) {
+			return;
+		}
+		Iterator<Long> it = lastSeen.values().iterator();
+		while (it.hasNext()) {
+			if (now - it.next() <= windowMillis) {
+				// 之后的都更晚看到
+				break;
+			}
+			it.remove();
+		}
+	}
+}
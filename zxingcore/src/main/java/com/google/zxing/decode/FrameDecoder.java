@@ -0,0 +1,123 @@
+package com.google.zxing.decode;
+
+import java.util.Map;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+
+/**
+ * 不依赖Android的帧解码：对NV21或纯亮度数据做旋转、裁剪后按多尺度、分级二值化的流程解码，
+ * 与相机扫描使用同一套流程，可以在服务端或普通JVM上运行。不是线程安全的，每个线程一个实例
+ *
+ * @author hugo
+ *
+ */
+public final class FrameDecoder {
+
+	private final MultiScaleDecoder multiScaleDecoder;
+
+	/**
+	 * @param hints
+	 *            解码参数，可由{@link DecodeFormats#buildHints}构造
+	 * @param binarizerType
+	 *            二值化算法
+	 * @param tiered
+	 *            是否先按行解码一维码，再计算整幅图像的二值化矩阵
+	 */
+	public FrameDecoder(Map<DecodeHintType, Object> hints,
+			BinarizerType binarizerType, boolean tiered) {
+		multiScaleDecoder = new MultiScaleDecoder(hints, binarizerType, tiered);
+	}
+
+	/**
+	 * 解码整帧
+	 *
+	 * @param data
+	 *            NV21帧或纯亮度数据，只使用前width * height字节
+	 * @param rotation
+	 *            顺时针旋转的角度，0、90、180或270
+	 */
+	public Result decode(byte[] data, int width, int height, int rotation) {
+		boolean swap = rotation == 90 || rotation == 270;
+		return decode(data, width, height, rotation, 0, 0, swap ? height
+				: width, swap ? width : height);
+	}
+
+	/**
+	 * 解码帧中的一个区域
+	 *
+	 * @param data
+	 *            NV21帧或纯亮度数据，只使用前width * height字节
+	 * @param rotation
+	 *            顺时针旋转的角度，0、90、180或270
+	 * @param left
+	 *            区域在旋转后图像中的位置和大小，下同
+	 * @return 结果点坐标相对于区域；未找到返回null
+	 */
+	public Result decode(byte[] data, int width, int height, int rotation,
+			int left, int top, int cropWidth, int cropHeight) {
+		byte[] luminances = rotate(data, width, height, rotation);
+		if (rotation == 90 || rotation == 270) {
+			int tmp = width;
+			width = height;
+			height = tmp;
+		}
+		return decode(new PlanarYUVLuminanceSource(luminances, width, height,
+				left, top, cropWidth, cropHeight, false));
+	}
+
+	/**
+	 * 解码已经准备好的亮度源，结果点坐标相对于source
+	 */
+	public Result decode(LuminanceSource source) {
+		return multiScaleDecoder.decode(source);
+	}
+
+	/**
+	 * @see MultiScaleDecoder#getPreferredScale()
+	 */
+	int getPreferredScale() {
+		return multiScaleDecoder.getPreferredScale();
+	}
+
+	/**
+	 * 顺时针旋转亮度平面（NV21的Y分量），旋转90或270度时宽高互换
+	 *
+	 * @param rotation
+	 *            0、90、180或270；为0时直接返回data
+	 */
+	public static byte[] rotate(byte[] data, int width, int height,
+			int rotation) {
+		if (rotation == 0) {
+			return data;
+		}
+		byte[] rotated = new byte[width * height];
+		switch (rotation) {
+		case 90:
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					rotated[x * height + height - y - 1] = data[x + y * width];
+				}
+			}
+			break;
+		case 180:
+			for (int i = 0, last = width * height - 1; i <= last; i++) {
+				rotated[last - i] = data[i];
+			}
+			break;
+		case 270:
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					rotated[(width - x - 1) * height + y] = data[x + y * width];
+				}
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported rotation: "
+					+ rotation);
+		}
+		return rotated;
+	}
+}
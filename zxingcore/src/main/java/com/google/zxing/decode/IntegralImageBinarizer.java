@@ -0,0 +1,202 @@
+package com.google.zxing.decode;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * 基于积分图的局部自适应二值化（Bradley算法）：像素亮度低于其周围窗口平均亮度的85%即判为黑色。
+ * 借助积分图，每个像素的窗口均值只需4次查表，代价与窗口大小无关。
+ * <p>
+ * 亮度和积分图缓冲区按线程复用，同一线程上的下一帧直接覆盖使用；超过{@link #MAX_POOLED_PIXELS}
+ * 的大图单独分配，随binarizer一起释放，不会一直占用线程的内存。{@link #getBlackMatrix()}
+ * 返回的矩阵每个binarizer单独分配，与HybridBinarizer一样可以在下一帧之后继续使用
+ *
+ * @author hugo
+ *
+ */
+final class IntegralImageBinarizer extends Binarizer {
+
+	/**
+	 * 低于窗口均值的百分比
+	 */
+	private static final int THRESHOLD_PERCENT = 15;
+
+	/**
+	 * 窗口边长为图像短边的1/8，但不小于该值
+	 */
+	private static final int MIN_WINDOW_SIZE = 16;
+
+	/**
+	 * 按线程复用的缓冲区最多容纳的像素数，覆盖常见的预览帧（约5MB）；相册中的大图偶尔出现，不长期保留
+	 */
+	static final int MAX_POOLED_PIXELS = 1280 * 960;
+
+	private static final ThreadLocal<Workspace> WORKSPACES = new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
+
+	private Workspace workspace;
+
+	private BitMatrix matrix;
+
+	IntegralImageBinarizer(LuminanceSource source) {
+		super(source);
+	}
+
+	@Override
+	public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+		Workspace ws = prepare();
+		int width = getWidth();
+		if (row == null || row.getSize() < width) {
+			row = new BitArray(width);
+		}
+		else {
+			row.clear();
+		}
+		int[] integral = ws.integral;
+		byte[] luminances = ws.luminances;
+		int stride = width + 1;
+		int radius = ws.radius;
+		int top = Math.max(0, y - radius);
+		int bottom = Math.min(getHeight() - 1, y + radius);
+		int rowOffset = y * width;
+		for (int x = 0; x < width; x++) {
+			if (isBlack(integral, stride, luminances[rowOffset + x] & 0xff,
+					Math.max(0, x - radius), top,
+					Math.min(width - 1, x + radius), bottom)) {
+				row.set(x);
+			}
+		}
+		return row;
+	}
+
+	@Override
+	public BitMatrix getBlackMatrix() throws NotFoundException {
+		if (matrix != null) {
+			return matrix;
+		}
+		Workspace ws = prepare();
+		int width = getWidth();
+		int height = getHeight();
+		// 解码器可能保留矩阵（如多码解码时分块查找），不能与其他帧共用
+		BitMatrix result = new BitMatrix(width, height);
+
+		int[] integral = ws.integral;
+		byte[] luminances = ws.luminances;
+		int stride = width + 1;
+		int radius = ws.radius;
+		for (int y = 0; y < height; y++) {
+			int top = Math.max(0, y - radius);
+			int bottom = Math.min(height - 1, y + radius);
+			int rowOffset = y * width;
+			for (int x = 0; x < width; x++) {
+				if (isBlack(integral, stride, luminances[rowOffset + x] & 0xff,
+						Math.max(0, x - radius), top,
+						Math.min(width - 1, x + radius), bottom)) {
+					result.set(x, y);
+				}
+			}
+		}
+		matrix = result;
+		return result;
+	}
+
+	@Override
+	public Binarizer createBinarizer(LuminanceSource source) {
+		return new IntegralImageBinarizer(source);
+	}
+
+	/**
+	 * 窗口[left, right] x [top, bottom]内的亮度和由积分图4个角相减得到。积分图以int存储，
+	 * 超大图像的累加会溢出，但窗口和本身不会溢出，按补码相减结果依然正确
+	 */
+	private static boolean isBlack(int[] integral, int stride, int luminance,
+			int left, int top, int right, int bottom) {
+		int count = (right - left + 1) * (bottom - top + 1);
+		int sum = integral[(bottom + 1) * stride + right + 1]
+				- integral[top * stride + right + 1]
+				- integral[(bottom + 1) * stride + left]
+				+ integral[top * stride + left];
+		return (long) luminance * count * 100 <= (long) sum
+				* (100 - THRESHOLD_PERCENT);
+	}
+
+	/**
+	 * 取得当前线程的缓冲区，并在第一次调用时把亮度数据和积分图填充进去
+	 */
+	private Workspace prepare() {
+		if (workspace != null && workspace.owner == this) {
+			return workspace;
+		}
+		int width = getWidth();
+		int height = getHeight();
+		Workspace ws = width * height <= MAX_POOLED_PIXELS ? WORKSPACES.get()
+				: new Workspace();
+		ws.ensureCapacity(width, height);
+
+		LuminanceSource source = getLuminanceSource();
+		byte[] luminances = ws.luminances;
+		byte[] row = ws.row;
+		int[] integral = ws.integral;
+		int stride = width + 1;
+		for (int x = 0; x < stride; x++) {
+			integral[x] = 0;
+		}
+		for (int y = 0; y < height; y++) {
+			row = source.getRow(y, row);
+			System.arraycopy(row, 0, luminances, y * width, width);
+			int rowSum = 0;
+			int above = y * stride;
+			int current = above + stride;
+			integral[current] = 0;
+			for (int x = 0; x < width; x++) {
+				rowSum += row[x] & 0xff;
+				integral[current + x + 1] = integral[above + x + 1] + rowSum;
+			}
+		}
+		ws.row = row;
+		ws.radius = Math.max(MIN_WINDOW_SIZE, Math.min(width, height) / 8) / 2;
+		ws.owner = this;
+		workspace = ws;
+		return ws;
+	}
+
+	/**
+	 * 每个线程一份的可复用缓冲区
+	 */
+	private static final class Workspace {
+
+		/**
+		 * 当前缓冲区内容属于哪个binarizer
+		 */
+		IntegralImageBinarizer owner;
+
+		byte[] luminances;
+
+		byte[] row;
+
+		int[] integral;
+
+		int radius;
+
+		void ensureCapacity(int width, int height) {
+			int size = width * height;
+			if (luminances == null || luminances.length < size) {
+				luminances = new byte[size];
+			}
+			if (row == null || row.length < width) {
+				row = new byte[width];
+			}
+			int integralSize = (width + 1) * (height + 1);
+			if (integral == null || integral.length < integralSize) {
+				integral = new int[integralSize];
+			}
+		}
+	}
+}
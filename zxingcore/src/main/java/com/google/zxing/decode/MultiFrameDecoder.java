@@ -0,0 +1,212 @@
+package com.google.zxing.decode;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+
+/**
+ * 一帧多码的解码：先用{@link QRCodeMultiReader}一次找出画面中所有二维码，把已找到的区域涂白，
+ * 再用{@link GenericMultipleBarcodeReader}在剩下的画面中找其他格式的条码，避免同一个码被重复定位和解码。
+ * 不是线程安全的，每个线程一个实例
+ *
+ * @author hugo
+ *
+ */
+public final class MultiFrameDecoder {
+
+	/**
+	 * 二维码定位图形中心之间的距离按此比例向外扩展后涂白，覆盖定位图形外沿和部分空白区
+	 */
+	private static final float MASK_MARGIN = 0.3f;
+
+	private static final byte WHITE = (byte) 0xFF;
+
+	private final BinarizerType binarizerType;
+
+	/**
+	 * 画面中可能有二维码时不为null
+	 */
+	private final QRCodeMultiReader qrCodeReader;
+
+	private final Map<DecodeHintType, Object> qrCodeHints;
+
+	/**
+	 * 除二维码外还有其他格式时不为null
+	 */
+	private final GenericMultipleBarcodeReader otherReader;
+
+	private final Map<DecodeHintType, Object> otherHints;
+
+	/**
+	 * @param hints
+	 *            解码参数，可由{@link DecodeFormats#buildHints}构造；未指定格式时支持所有格式
+	 * @param binarizerType
+	 *            二值化算法
+	 */
+	public MultiFrameDecoder(Map<DecodeHintType, Object> hints,
+			BinarizerType binarizerType) {
+		this.binarizerType = binarizerType;
+
+		@SuppressWarnings("unchecked")
+		Collection<BarcodeFormat> formats = (Collection<BarcodeFormat>) hints
+				.get(DecodeHintType.POSSIBLE_FORMATS);
+		EnumSet<BarcodeFormat> others = formats == null || formats.isEmpty() ? EnumSet
+				.allOf(BarcodeFormat.class) : EnumSet.copyOf(formats);
+		boolean hasQRCode = others.remove(BarcodeFormat.QR_CODE);
+
+		if (hasQRCode) {
+			qrCodeReader = new QRCodeMultiReader();
+			qrCodeHints = copyWithoutCallback(hints);
+		}
+		else {
+			qrCodeReader = null;
+			qrCodeHints = null;
+		}
+
+		if (others.isEmpty()) {
+			otherReader = null;
+			otherHints = null;
+		}
+		else {
+			otherHints = copyWithoutCallback(hints);
+			otherHints.put(DecodeHintType.POSSIBLE_FORMATS, others);
+			otherReader = new GenericMultipleBarcodeReader(
+					new MultiFormatReader());
+		}
+	}
+
+	/**
+	 * 多码查找会在整幅画面和切出的各部分上反复检测，回调报告的候选点大量重复、多为误检，
+	 * 画到界面上只是噪点，所以去掉回调。最终结果的坐标已由读取器换算到整幅画面，不受影响
+	 */
+	private static Map<DecodeHintType, Object> copyWithoutCallback(
+			Map<DecodeHintType, Object> hints) {
+		Map<DecodeHintType, Object> copy = new EnumMap<DecodeHintType, Object>(
+				DecodeHintType.class);
+		copy.putAll(hints);
+		copy.remove(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+		return copy;
+	}
+
+	/**
+	 * 找出画面中的所有条码
+	 *
+	 * @return 结果点坐标相对于source，按找到的顺序排列，内容和格式相同的只保留一个；未找到时为空数组
+	 */
+	public Result[] decodeMultiple(LuminanceSource source) {
+		Map<String, Result> results = new LinkedHashMap<String, Result>();
+
+		if (qrCodeReader != null) {
+			add(results, decode(qrCodeReader, source, qrCodeHints));
+		}
+
+		if (otherReader != null) {
+			LuminanceSource remaining = source;
+			if (!results.isEmpty()) {
+				remaining = mask(source, results.values());
+			}
+			add(results, decode(otherReader, remaining, otherHints));
+		}
+
+		return results.values().toArray(new Result[results.size()]);
+	}
+
+	private Result[] decode(MultipleBarcodeReader reader,
+			LuminanceSource source, Map<DecodeHintType, Object> hints) {
+		try {
+			return reader.decodeMultiple(
+					new BinaryBitmap(binarizerType.create(source)), hints);
+		}
+		catch (ReaderException re) {
+			return null;
+		}
+	}
+
+	private static void add(Map<String, Result> results, Result[] found) {
+		if (found == null) {
+			return;
+		}
+		for (Result result : found) {
+			String key = result.getBarcodeFormat() + "\n" + result.getText();
+			if (!results.containsKey(key)) {
+				results.put(key, result);
+			}
+		}
+	}
+
+	/**
+	 * 复制一份亮度数据，把已找到的二维码区域涂白
+	 */
+	private static LuminanceSource mask(LuminanceSource source,
+			Collection<Result> found) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		// 不裁剪时getMatrix()可能直接返回原数组，缩略图还要用，必须复制
+		byte[] luminances = source.getMatrix().clone();
+		for (Result result : found) {
+			int[] region = qrCodeRegion(result.getResultPoints(), width,
+					height);
+			if (region == null) {
+				continue;
+			}
+			for (int y = region[1]; y < region[3]; y++) {
+				int offset = y * width;
+				Arrays.fill(luminances, offset + region[0], offset
+						+ region[2], WHITE);
+			}
+		}
+		return new PlanarYUVLuminanceSource(luminances, width, height, 0, 0,
+				width, height, false);
+	}
+
+	/**
+	 * 由左下、左上、右上三个定位图形的中心推算出第四个角，取外接矩形后向外扩展
+	 *
+	 * @return {left, top, right, bottom}，已限制在图像范围内；结果点不足时为null
+	 */
+	private static int[] qrCodeRegion(ResultPoint[] points, int width,
+			int height) {
+		if (points == null || points.length < 3 || points[0] == null
+				|| points[1] == null || points[2] == null) {
+			return null;
+		}
+		ResultPoint bottomLeft = points[0];
+		ResultPoint topLeft = points[1];
+		ResultPoint topRight = points[2];
+		float cornerX = bottomLeft.getX() + topRight.getX() - topLeft.getX();
+		float cornerY = bottomLeft.getY() + topRight.getY() - topLeft.getY();
+
+		float minX = Math.min(Math.min(bottomLeft.getX(), topLeft.getX()),
+				Math.min(topRight.getX(), cornerX));
+		float maxX = Math.max(Math.max(bottomLeft.getX(), topLeft.getX()),
+				Math.max(topRight.getX(), cornerX));
+		float minY = Math.min(Math.min(bottomLeft.getY(), topLeft.getY()),
+				Math.min(topRight.getY(), cornerY));
+		float maxY = Math.max(Math.max(bottomLeft.getY(), topLeft.getY()),
+				Math.max(topRight.getY(), cornerY));
+
+		float side = Math.max(ResultPoint.distance(topLeft, topRight),
+				ResultPoint.distance(topLeft, bottomLeft));
+		float pad = side * MASK_MARGIN;
+		return new int[] { Math.max(0, (int) (minX - pad)),
+				Math.max(0, (int) (minY - pad)),
+				Math.min(width, (int) Math.ceil(maxX + pad)),
+				Math.min(height, (int) Math.ceil(maxY + pad)) };
+	}
+}
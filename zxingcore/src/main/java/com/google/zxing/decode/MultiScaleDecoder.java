@@ -0,0 +1,302 @@
+package com.google.zxing.decode;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+
+/**
+ * 多尺度解码：扫描框较大时先对缩小2倍或4倍的图像解码，失败后再对粗解码中发现可疑点的区域
+ * 或整幅原图以全分辨率解码。缩小倍数根据该解码器以往的解码结果自适应调整。
+ * 非线程安全，每个线程使用自己的实例
+ *
+ * @author hugo
+ *
+ */
+final class MultiScaleDecoder {
+
+	/**
+	 * 缩小后短边不能小于该值，否则直接按原图解码
+	 */
+	private static final int MIN_SCALED_DIMENSION = 180;
+
+	private static final int MAX_SCALE = 4;
+
+	/**
+	 * 在当前倍数下连续成功这么多次后，尝试更大的缩小倍数
+	 */
+	private static final int PROMOTE_AFTER_HITS = 8;
+
+	/**
+	 * 全分辨率连续成功这么多次后，重新尝试缩小解码
+	 */
+	private static final int PROBE_AFTER_FULL_HITS = 16;
+
+	/**
+	 * 裁剪可疑区域时在其四周额外保留的比例（相对于区域尺寸）
+	 */
+	private static final float REGION_MARGIN = 0.5f;
+
+	/**
+	 * 分级模式下先解码一维码，否则为null
+	 */
+	private final OneDFastPath oneDFastPath;
+
+	/**
+	 * 分级模式下只负责二维码；一维码已由oneDFastPath处理且无需重试时为null
+	 */
+	private final MultiFormatReader multiFormatReader;
+
+	private final RegionCallback regionCallback;
+
+	private final BinarizerType binarizerType;
+
+	/**
+	 * 最近一次有效的缩小倍数。每个解码器各自学习，不同画面（整幅预览、裁剪区域、缩小后的整幅画面、
+	 * 相册图片）中码的大小不同，不能互相影响
+	 */
+	private int preferredScale = 2;
+
+	private int hitsAtScale;
+
+	private int fullResolutionHits;
+
+	/**
+	 * @param tiered
+	 *            是否先用{@link OneDFastPath}按行解码一维码，再计算整幅图像的二值化矩阵
+	 */
+	MultiScaleDecoder(Map<DecodeHintType, Object> hints,
+			BinarizerType binarizerType, boolean tiered) {
+		this.binarizerType = binarizerType;
+		regionCallback = new RegionCallback(
+				(ResultPointCallback) hints
+						.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK));
+
+		Map<DecodeHintType, Object> scaledHints = hints;
+		oneDFastPath = tiered ? OneDFastPath.create(hints) : null;
+		if (oneDFastPath != null) {
+			scaledHints = OneDFastPath.withoutOneD(hints);
+			if (scaledHints == null && binarizerType != BinarizerType.HYBRID) {
+				// 只有一维码：换一种二值化算法在其他尺度上再试
+				scaledHints = hints;
+			}
+		}
+
+		if (scaledHints == null) {
+			// HybridBinarizer的按行二值化与快速通道相同，没有必要重试
+			multiFormatReader = null;
+		}
+		else {
+			scaledHints = new EnumMap<DecodeHintType, Object>(scaledHints);
+			scaledHints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK,
+					regionCallback);
+			multiFormatReader = new MultiFormatReader();
+			multiFormatReader.setHints(scaledHints);
+		}
+	}
+
+	/**
+	 * 解码，返回的结果点坐标均相对于source
+	 */
+	Result decode(LuminanceSource source) {
+		if (oneDFastPath != null) {
+			regionCallback.begin(1, 0, 0);
+			Result result = oneDFastPath.decode(source);
+			if (result != null || multiFormatReader == null) {
+				return result;
+			}
+		}
+
+		int scale = chooseScale(source);
+		if (scale > 1) {
+			regionCallback.begin(scale, 0, 0);
+			Result result = decodeOnce(new DownscaledLuminanceSource(source,
+					scale));
+			if (result != null) {
+				onCoarseHit(scale);
+				return transform(result, scale, 0, 0);
+			}
+		}
+
+		// 粗解码失败：优先只解码可疑区域
+		if (scale > 1 && regionCallback.hasRegion() && source.isCropSupported()) {
+			int[] region = regionCallback.getRegion(source.getWidth(),
+					source.getHeight(), REGION_MARGIN);
+			int width = region[2] - region[0];
+			int height = region[3] - region[1];
+			if (width * height < source.getWidth() * source.getHeight() / 2) {
+				regionCallback.begin(1, region[0], region[1]);
+				Result result = decodeOnce(source.crop(region[0], region[1],
+						width, height));
+				if (result != null) {
+					onFullResolutionHit(scale);
+					return transform(result, 1, region[0], region[1]);
+				}
+			}
+		}
+
+		regionCallback.begin(1, 0, 0);
+		Result result = decodeOnce(source);
+		if (result != null) {
+			onFullResolutionHit(scale);
+		}
+		return result;
+	}
+
+	/**
+	 * @return 下一帧首先尝试的缩小倍数（还会受图像大小限制）
+	 */
+	int getPreferredScale() {
+		return preferredScale;
+	}
+
+	private Result decodeOnce(LuminanceSource source) {
+		try {
+			return multiFormatReader.decodeWithState(new BinaryBitmap(
+					binarizerType.create(source)));
+		}
+		catch (ReaderException re) {
+			return null;
+		}
+		finally {
+			multiFormatReader.reset();
+		}
+	}
+
+	private int chooseScale(LuminanceSource source) {
+		int minDimension = Math.min(source.getWidth(), source.getHeight());
+		int scale = preferredScale;
+		if (scale == 1 && fullResolutionHits >= PROBE_AFTER_FULL_HITS) {
+			fullResolutionHits = 0;
+			scale = 2;
+		}
+		while (scale > 1 && minDimension / scale < MIN_SCALED_DIMENSION) {
+			scale /= 2;
+		}
+		return scale;
+	}
+
+	private void onCoarseHit(int scale) {
+		fullResolutionHits = 0;
+		if (scale != preferredScale) {
+			preferredScale = scale;
+			hitsAtScale = 0;
+		}
+		if (++hitsAtScale >= PROMOTE_AFTER_HITS && scale < MAX_SCALE) {
+			hitsAtScale = 0;
+			preferredScale = scale * 2;
+		}
+	}
+
+	private void onFullResolutionHit(int triedScale) {
+		hitsAtScale = 0;
+		if (triedScale > 1) {
+			// 缩小后解不出来而原图可以，说明码太小，降低缩小倍数
+			preferredScale = triedScale / 2;
+		}
+		else {
+			fullResolutionHits++;
+		}
+	}
+
+	/**
+	 * 把缩小、裁剪后图像上的结果点换算回原图坐标
+	 */
+	static Result transform(Result result, int scale, int left,
+			int top) {
+		ResultPoint[] points = result.getResultPoints();
+		if (points == null || (scale == 1 && left == 0 && top == 0)) {
+			return result;
+		}
+		ResultPoint[] transformed = new ResultPoint[points.length];
+		for (int i = 0; i < points.length; i++) {
+			ResultPoint point = points[i];
+			transformed[i] = point == null ? null : new ResultPoint(
+					point.getX() * scale + left, point.getY() * scale + top);
+		}
+		Result copy = new Result(result.getText(), result.getRawBytes(),
+				transformed, result.getBarcodeFormat(), result.getTimestamp());
+		copy.putAllMetadata(result.getResultMetadata());
+		return copy;
+	}
+
+	/**
+	 * 将缩小或裁剪后图像上的可疑点换算回原图坐标后转发给界面，同时记录它们的外接矩形
+	 */
+	private static final class RegionCallback implements ResultPointCallback {
+
+		private final ResultPointCallback delegate;
+
+		private int scale = 1;
+		private int left;
+		private int top;
+
+		private float minX;
+		private float minY;
+		private float maxX;
+		private float maxY;
+		private boolean hasRegion;
+
+		RegionCallback(ResultPointCallback delegate) {
+			this.delegate = delegate;
+		}
+
+		void begin(int scale, int left, int top) {
+			this.scale = scale;
+			this.left = left;
+			this.top = top;
+			if (scale > 1) {
+				// 只有粗解码的可疑点用于决定后续裁剪区域
+				hasRegion = false;
+			}
+		}
+
+		boolean hasRegion() {
+			return hasRegion;
+		}
+
+		/**
+		 * @return {left, top, right, bottom}，已按margin扩展并限制在图像范围内
+		 */
+		int[] getRegion(int width, int height, float margin) {
+			float padX = Math.max((maxX - minX) * margin, scale * 8);
+			float padY = Math.max((maxY - minY) * margin, scale * 8);
+			int regionLeft = Math.max(0, (int) (minX - padX));
+			int regionTop = Math.max(0, (int) (minY - padY));
+			int regionRight = Math.min(width, (int) (maxX + padX) + 1);
+			int regionBottom = Math.min(height, (int) (maxY + padY) + 1);
+			return new int[] { regionLeft, regionTop, regionRight, regionBottom };
+		}
+
+		@Override
+		public void foundPossibleResultPoint(ResultPoint point) {
+			float x = point.getX() * scale + left;
+			float y = point.getY() * scale + top;
+			if (scale > 1) {
+				if (!hasRegion) {
+					minX = maxX = x;
+					minY = maxY = y;
+					hasRegion = true;
+				}
+				else {
+					minX = Math.min(minX, x);
+					minY = Math.min(minY, y);
+					maxX = Math.max(maxX, x);
+					maxY = Math.max(maxY, y);
+				}
+			}
+			if (delegate != null) {
+				// 保留定位图形的模块大小
+				delegate.foundPossibleResultPoint(SizedResultPoint.transform(
+						point, scale, left, top));
+			}
+		}
+	}
+}
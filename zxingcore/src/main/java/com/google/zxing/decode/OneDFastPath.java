@@ -0,0 +1,102 @@
+package com.google.zxing.decode;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.oned.MultiFormatOneDReader;
+
+/**
+ * 分级二值化的第一级：一维码读取器只需要少数几行像素，因此先用GlobalHistogramBinarizer按行解码一维码，
+ * 整幅图像的局部阈值二值化留给后续的二维码读取器，仅在确实需要时才计算
+ *
+ * @author hugo
+ *
+ */
+final class OneDFastPath {
+
+	private final MultiFormatOneDReader reader;
+
+	private final Map<DecodeHintType, Object> hints;
+
+	private OneDFastPath(Map<DecodeHintType, Object> hints) {
+		this.hints = hints;
+		reader = new MultiFormatOneDReader(hints);
+	}
+
+	/**
+	 * @return 若hints中包含一维码格式则返回对应的快速通道，否则返回null
+	 */
+	static OneDFastPath create(Map<DecodeHintType, ?> hints) {
+		Collection<BarcodeFormat> oneDFormats = oneDFormats(hints);
+		if (oneDFormats.isEmpty()) {
+			return null;
+		}
+		Map<DecodeHintType, Object> oneDHints = new EnumMap<DecodeHintType, Object>(
+				DecodeHintType.class);
+		oneDHints.putAll(hints);
+		oneDHints.put(DecodeHintType.POSSIBLE_FORMATS, oneDFormats);
+		return new OneDFastPath(oneDHints);
+	}
+
+	/**
+	 * 去掉一维码格式后的hints，供第二级读取器使用；若不剩任何格式则返回null
+	 */
+	static Map<DecodeHintType, Object> withoutOneD(Map<DecodeHintType, ?> hints) {
+		Collection<BarcodeFormat> remaining = EnumSet
+				.noneOf(BarcodeFormat.class);
+		Collection<?> formats = (Collection<?>) hints
+				.get(DecodeHintType.POSSIBLE_FORMATS);
+		if (formats != null) {
+			for (Object format : formats) {
+				if (!DecodeFormats.ONE_D_FORMATS.contains(format)) {
+					remaining.add((BarcodeFormat) format);
+				}
+			}
+		}
+		if (remaining.isEmpty()) {
+			return null;
+		}
+		Map<DecodeHintType, Object> result = new EnumMap<DecodeHintType, Object>(
+				DecodeHintType.class);
+		result.putAll(hints);
+		result.put(DecodeHintType.POSSIBLE_FORMATS, remaining);
+		return result;
+	}
+
+	private static Collection<BarcodeFormat> oneDFormats(
+			Map<DecodeHintType, ?> hints) {
+		Collection<BarcodeFormat> result = EnumSet.noneOf(BarcodeFormat.class);
+		Collection<?> formats = (Collection<?>) hints
+				.get(DecodeHintType.POSSIBLE_FORMATS);
+		if (formats != null) {
+			for (Object format : formats) {
+				if (DecodeFormats.ONE_D_FORMATS.contains(format)) {
+					result.add((BarcodeFormat) format);
+				}
+			}
+		}
+		return result;
+	}
+
+	Result decode(LuminanceSource source) {
+		try {
+			return reader.decode(new BinaryBitmap(new GlobalHistogramBinarizer(
+					source)), hints);
+		}
+		catch (ReaderException re) {
+			return null;
+		}
+		finally {
+			reader.reset();
+		}
+	}
+}
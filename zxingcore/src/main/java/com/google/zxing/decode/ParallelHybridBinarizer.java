@@ -0,0 +1,305 @@
+package com.google.zxing.decode;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.DaemonExecutors;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * 与HybridBinarizer算法相同、结果逐位一致的二值化，但分块统计和阈值化按水平条带并行计算。
+ * 图像较小时直接使用HybridBinarizer，避免线程调度开销。HybridBinarizer是final类，
+ * 这里与它一样继承GlobalHistogramBinarizer，按行二值化的结果也相同。
+ * <p>
+ * HybridBinarizer中对比度不足的块会参考左方和上方块的黑点值，存在行间依赖，因此分三步：
+ * 并行统计每块的和、最小值与最大值；顺序计算各块黑点值（每块只需常数次运算）；并行阈值化。
+ * ForkJoinPool要求API 21，这里用固定大小的线程池，调用线程自己也处理一个条带
+ *
+ * @author hugo
+ *
+ */
+final class ParallelHybridBinarizer extends GlobalHistogramBinarizer {
+
+	/**
+	 * 像素数不低于该值才并行
+	 */
+	private static final int PARALLEL_THRESHOLD = 1024 * 1024;
+
+	/**
+	 * 每个条带最少包含的块行数，同时保证最后两行块（可能重叠）落在同一条带中
+	 */
+	private static final int MIN_BLOCK_ROWS_PER_BAND = 8;
+
+	// 以下常量与HybridBinarizer保持一致
+	private static final int BLOCK_SIZE_POWER = 3;
+	private static final int BLOCK_SIZE = 1 << BLOCK_SIZE_POWER;
+	private static final int BLOCK_SIZE_MASK = BLOCK_SIZE - 1;
+	private static final int MINIMUM_DIMENSION = BLOCK_SIZE * 5;
+	private static final int MIN_DYNAMIC_RANGE = 24;
+
+	private static final int THREADS = Math.max(1, Runtime.getRuntime()
+			.availableProcessors());
+
+	private static final DaemonExecutors.Lazy EXECUTOR = new DaemonExecutors.Lazy(
+			"Binarizer", Math.max(1, THREADS - 1));
+
+	/**
+	 * 最多分成的条带数
+	 */
+	private final int threads;
+
+	private BitMatrix matrix;
+
+	ParallelHybridBinarizer(LuminanceSource source) {
+		this(source, THREADS);
+	}
+
+	/**
+	 * @param threads
+	 *            最多分成的条带数，测试时可以在单核机器上走并行路径
+	 */
+	ParallelHybridBinarizer(LuminanceSource source, int threads) {
+		super(source);
+		this.threads = threads;
+	}
+
+	@Override
+	public BitMatrix getBlackMatrix() throws NotFoundException {
+		if (matrix != null) {
+			return matrix;
+		}
+		int width = getWidth();
+		int height = getHeight();
+		if (threads == 1 || width < MINIMUM_DIMENSION
+				|| height < MINIMUM_DIMENSION
+				|| width * height < PARALLEL_THRESHOLD) {
+			matrix = new HybridBinarizer(getLuminanceSource()).getBlackMatrix();
+			return matrix;
+		}
+
+		final byte[] luminances = getLuminanceSource().getMatrix();
+		int subWidth = width >> BLOCK_SIZE_POWER;
+		if ((width & BLOCK_SIZE_MASK) != 0) {
+			subWidth++;
+		}
+		int subHeight = height >> BLOCK_SIZE_POWER;
+		if ((height & BLOCK_SIZE_MASK) != 0) {
+			subHeight++;
+		}
+
+		final BlockStats stats = new BlockStats(subWidth, subHeight);
+		final int fWidth = width;
+		final int fHeight = height;
+		runInBands(subHeight, threads, new BandTask() {
+			@Override
+			public void run(int fromRow, int toRow) {
+				calculateBlockStats(luminances, fWidth, fHeight, fromRow,
+						toRow, stats);
+			}
+		});
+
+		final int[][] blackPoints = calculateBlackPoints(stats);
+
+		final BitMatrix newMatrix = new BitMatrix(width, height);
+		runInBands(subHeight, threads, new BandTask() {
+			@Override
+			public void run(int fromRow, int toRow) {
+				calculateThresholdForBlock(luminances, fWidth, fHeight,
+						fromRow, toRow, blackPoints, newMatrix);
+			}
+		});
+		matrix = newMatrix;
+		return matrix;
+	}
+
+	@Override
+	public Binarizer createBinarizer(LuminanceSource source) {
+		return new ParallelHybridBinarizer(source, threads);
+	}
+
+	private interface BandTask {
+		void run(int fromRow, int toRow);
+	}
+
+	/**
+	 * 将[0, rows)块行分成若干条带并行执行，调用线程处理第一个条带，全部完成后返回
+	 */
+	private static void runInBands(int rows, int threads, final BandTask task) {
+		int bands = Math.min(threads, rows / MIN_BLOCK_ROWS_PER_BAND);
+		if (bands <= 1) {
+			task.run(0, rows);
+			return;
+		}
+		final CountDownLatch done = new CountDownLatch(bands - 1);
+		ExecutorService pool = EXECUTOR.get();
+		for (int band = 1; band < bands; band++) {
+			final int fromRow = rows * band / bands;
+			final int toRow = rows * (band + 1) / bands;
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run(fromRow, toRow);
+					}
+					finally {
+						done.countDown();
+					}
+				}
+			});
+		}
+		task.run(0, rows / bands);
+
+		boolean interrupted = false;
+		while (true) {
+			try {
+				done.await();
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 每个块的像素和、最小值、最大值
+	 */
+	private static final class BlockStats {
+		final int[][] sums;
+		final int[][] mins;
+		final int[][] maxs;
+
+		BlockStats(int subWidth, int subHeight) {
+			sums = new int[subHeight][subWidth];
+			mins = new int[subHeight][subWidth];
+			maxs = new int[subHeight][subWidth];
+		}
+	}
+
+	private static void calculateBlockStats(byte[] luminances, int width,
+			int height, int fromRow, int toRow, BlockStats stats) {
+		int subWidth = stats.sums[0].length;
+		int maxYOffset = height - BLOCK_SIZE;
+		int maxXOffset = width - BLOCK_SIZE;
+		for (int y = fromRow; y < toRow; y++) {
+			int yoffset = y << BLOCK_SIZE_POWER;
+			if (yoffset > maxYOffset) {
+				yoffset = maxYOffset;
+			}
+			for (int x = 0; x < subWidth; x++) {
+				int xoffset = x << BLOCK_SIZE_POWER;
+				if (xoffset > maxXOffset) {
+					xoffset = maxXOffset;
+				}
+				int sum = 0;
+				int min = 0xFF;
+				int max = 0;
+				for (int yy = 0, offset = yoffset * width + xoffset; yy < BLOCK_SIZE; yy++, offset += width) {
+					for (int xx = 0; xx < BLOCK_SIZE; xx++) {
+						int pixel = luminances[offset + xx] & 0xFF;
+						sum += pixel;
+						if (pixel < min) {
+							min = pixel;
+						}
+						if (pixel > max) {
+							max = pixel;
+						}
+					}
+				}
+				stats.sums[y][x] = sum;
+				stats.mins[y][x] = min;
+				stats.maxs[y][x] = max;
+			}
+		}
+	}
+
+	/**
+	 * 与HybridBinarizer.calculateBlackPoints相同的规则，依赖已算出的左方与上方块，只能顺序执行
+	 */
+	private static int[][] calculateBlackPoints(BlockStats stats) {
+		int subHeight = stats.sums.length;
+		int subWidth = stats.sums[0].length;
+		int[][] blackPoints = new int[subHeight][subWidth];
+		for (int y = 0; y < subHeight; y++) {
+			for (int x = 0; x < subWidth; x++) {
+				int min = stats.mins[y][x];
+				int max = stats.maxs[y][x];
+				int average = stats.sums[y][x] >> (BLOCK_SIZE_POWER * 2);
+				if (max - min <= MIN_DYNAMIC_RANGE) {
+					average = min / 2;
+					if (y > 0 && x > 0) {
+						int averageNeighborBlackPoint = (blackPoints[y - 1][x]
+								+ (2 * blackPoints[y][x - 1]) + blackPoints[y - 1][x - 1]) / 4;
+						if (min < averageNeighborBlackPoint) {
+							average = averageNeighborBlackPoint;
+						}
+					}
+				}
+				blackPoints[y][x] = average;
+			}
+		}
+		return blackPoints;
+	}
+
+	/**
+	 * 与HybridBinarizer.calculateThresholdForBlock相同。不同块行写入不同的矩阵行，
+	 * 只有最后两行块可能重叠，而它们总在同一条带内，因此无需同步
+	 */
+	private static void calculateThresholdForBlock(byte[] luminances,
+			int width, int height, int fromRow, int toRow,
+			int[][] blackPoints, BitMatrix matrix) {
+		int subHeight = blackPoints.length;
+		int subWidth = blackPoints[0].length;
+		int maxYOffset = height - BLOCK_SIZE;
+		int maxXOffset = width - BLOCK_SIZE;
+		for (int y = fromRow; y < toRow; y++) {
+			int yoffset = y << BLOCK_SIZE_POWER;
+			if (yoffset > maxYOffset) {
+				yoffset = maxYOffset;
+			}
+			for (int x = 0; x < subWidth; x++) {
+				int xoffset = x << BLOCK_SIZE_POWER;
+				if (xoffset > maxXOffset) {
+					xoffset = maxXOffset;
+				}
+				int left = cap(x, 2, subWidth - 3);
+				int top = cap(y, 2, subHeight - 3);
+				int sum = 0;
+				for (int z = -2; z <= 2; z++) {
+					int[] blackRow = blackPoints[top + z];
+					sum += blackRow[left - 2] + blackRow[left - 1]
+							+ blackRow[left] + blackRow[left + 1]
+							+ blackRow[left + 2];
+				}
+				int average = sum / 25;
+				thresholdBlock(luminances, xoffset, yoffset, average, width,
+						matrix);
+			}
+		}
+	}
+
+	private static int cap(int value, int min, int max) {
+		return value < min ? min : value > max ? max : value;
+	}
+
+	private static void thresholdBlock(byte[] luminances, int xoffset,
+			int yoffset, int threshold, int stride, BitMatrix matrix) {
+		for (int y = 0, offset = yoffset * stride + xoffset; y < BLOCK_SIZE; y++, offset += stride) {
+			for (int x = 0; x < BLOCK_SIZE; x++) {
+				// Comparison needs to be <= so that black == 0 pixels are black
+				// even if the threshold is 0.
+				if ((luminances[offset + x] & 0xFF) <= threshold) {
+					matrix.set(xoffset + x, yoffset + y);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package com.google.zxing.decode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.DaemonExecutors;
+
+/**
+ * 多区域解码：从同一帧中分别裁出各个{@link ScanRegion}，并行解码，结果按区域名返回。
+ * 每个区域只读取自己范围内的像素，各有一个{@link FrameDecoder}，多尺度解码的缩小倍数按区域中码的大小各自调整。
+ * 不是线程安全的，每个线程一个实例
+ *
+ * @author hugo
+ *
+ */
+public final class RegionDecoder {
+
+	private static final Logger LOG = Logger.getLogger(RegionDecoder.class
+			.getName());
+
+	private static final int THREADS = Runtime.getRuntime()
+			.availableProcessors();
+
+	private static final DaemonExecutors.Lazy EXECUTOR = new DaemonExecutors.Lazy(
+			"RegionDecoder", THREADS);
+
+	private final List<ScanRegion> regions;
+
+	/**
+	 * 与regions一一对应
+	 */
+	private final FrameDecoder[] decoders;
+
+	/**
+	 * @param regions
+	 *            扫描区域，名字不能重复
+	 * @param hints
+	 *            解码参数，可由{@link DecodeFormats#buildHints}构造
+	 * @param binarizerType
+	 *            二值化算法
+	 * @param tiered
+	 *            是否先按行解码一维码，再计算整幅图像的二值化矩阵
+	 * @throws IllegalArgumentException
+	 *             没有区域或区域名重复
+	 */
+	public RegionDecoder(List<ScanRegion> regions,
+			Map<DecodeHintType, Object> hints, BinarizerType binarizerType,
+			boolean tiered) {
+		if (regions.isEmpty()) {
+			throw new IllegalArgumentException("No regions");
+		}
+		Set<String> names = new HashSet<String>();
+		for (ScanRegion region : regions) {
+			if (!names.add(region.getName())) {
+				throw new IllegalArgumentException("Duplicate region "
+						+ region.getName());
+			}
+		}
+		this.regions = new ArrayList<ScanRegion>(regions);
+
+		// 各区域在不同线程中解码，结果点相对于各自的区域，不能直接画到界面上
+		Map<DecodeHintType, Object> regionHints = new EnumMap<DecodeHintType, Object>(
+				hints);
+		regionHints.remove(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+		decoders = new FrameDecoder[this.regions.size()];
+		for (int i = 0; i < decoders.length; i++) {
+			decoders[i] = new FrameDecoder(regionHints, binarizerType, tiered);
+		}
+	}
+
+	/**
+	 * 解码同一帧中的所有区域
+	 *
+	 * @param luminances
+	 *            已旋转好的亮度平面，只使用前width * height字节；解码完成前不能被改写
+	 * @return 区域名到结果的映射，按区域的顺序排列，只包含找到条码的区域；结果点坐标相对于各自的区域
+	 */
+	public Map<String, Result> decode(final byte[] luminances,
+			final int width, final int height) {
+		Result[] results = new Result[decoders.length];
+		if (decoders.length == 1 || THREADS < 2) {
+			for (int i = 0; i < decoders.length; i++) {
+				results[i] = decodeRegion(i, luminances, width, height);
+			}
+		}
+		else {
+			// 其余区域交给线程池，调用线程解码第一个区域，不空等
+			List<Future<Result>> futures = new ArrayList<Future<Result>>(
+					decoders.length - 1);
+			ExecutorService pool = EXECUTOR.get();
+			for (int i = 1; i < decoders.length; i++) {
+				final int index = i;
+				futures.add(pool.submit(new Callable<Result>() {
+					@Override
+					public Result call() {
+						return decodeRegion(index, luminances, width, height);
+					}
+				}));
+			}
+			results[0] = decodeRegion(0, luminances, width, height);
+			boolean interrupted = false;
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					results[i + 1] = futures.get(i).get();
+				}
+				catch (InterruptedException e) {
+					// 区域解码器下一帧还要用，不能留在后台继续运行，等它们全部结束
+					interrupted = true;
+					i--;
+				}
+				catch (ExecutionException e) {
+					// 一个区域出错不影响其他区域，当作这个区域没有找到
+					LOG.log(Level.WARNING, "Decoding region "
+							+ regions.get(i + 1).getName() + " failed",
+							e.getCause());
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		Map<String, Result> found = new LinkedHashMap<String, Result>();
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] != null) {
+				found.put(regions.get(i).getName(), results[i]);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return 构造时的区域，不可修改
+	 */
+	public List<ScanRegion> getRegions() {
+		return Collections.unmodifiableList(regions);
+	}
+
+	/**
+	 * @return 第index个区域的解码器
+	 */
+	FrameDecoder getDecoder(int index) {
+		return decoders[index];
+	}
+
+	private Result decodeRegion(int index, byte[] luminances, int width,
+			int height) {
+		int[] crop = regions.get(index).crop(width, height);
+		return decoders[index].decode(new PlanarYUVLuminanceSource(
+				luminances, width, height, crop[0], crop[1], crop[2],
+				crop[3], false));
+	}
+}
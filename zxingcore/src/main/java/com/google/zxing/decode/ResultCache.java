@@ -0,0 +1,350 @@
+package com.google.zxing.decode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.CacheDirectory;
+
+/**
+ * 解码结果缓存，以图片内容的指纹为键：内存中LRU一级，磁盘目录中每条结果一个小文件一级。
+ * 未找到条码的结果也会缓存，但超过TTL后失效，以便之后换用更强的解码方式重试。
+ * <p>
+ * 指纹取文件长度和全部内容的SHA-1，原地修改而大小不变的图片也能区分；同一路径在大小和修改时间不变时
+ * 直接复用上次的指纹，不再读文件。线程安全
+ *
+ * @author hugo
+ *
+ */
+public final class ResultCache {
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private static final int DISK_FORMAT_VERSION = 1;
+
+	/**
+	 * 路径到指纹的映射条数上限
+	 */
+	private static final int MAX_PATH_ENTRIES = 1024;
+
+	/**
+	 * 一次缓存查询的结果
+	 */
+	public static final class Entry {
+
+		private final Result result;
+		private final long timestamp;
+
+		Entry(Result result, long timestamp) {
+			this.result = result;
+			this.timestamp = timestamp;
+		}
+
+		/**
+		 * @return 解码结果，为null表示这张图片中没有找到条码
+		 */
+		public Result getResult() {
+			return result;
+		}
+
+		public boolean isFound() {
+			return result != null;
+		}
+
+		long getTimestamp() {
+			return timestamp;
+		}
+	}
+
+	private static final class PathKey {
+		final long length;
+		final long lastModified;
+		final String fingerprint;
+
+		PathKey(long length, long lastModified, String fingerprint) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	private final Map<String, Entry> memory;
+
+	private final Map<String, PathKey> paths;
+
+	/**
+	 * 只缓存在内存中时为null
+	 */
+	private final CacheDirectory disk;
+
+	private final long negativeTtlMillis;
+
+	/**
+	 * @param maxMemoryEntries
+	 *            内存中保留的结果数
+	 * @param directory
+	 *            磁盘缓存目录，为null时只缓存在内存中
+	 * @param maxDiskEntries
+	 *            磁盘中保留的结果数，超出后删除最旧的
+	 * @param negativeTtlMillis
+	 *            未找到条码的结果的有效期
+	 */
+	public ResultCache(final int maxMemoryEntries, File directory,
+			int maxDiskEntries, long negativeTtlMillis) {
+		memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, ResultCache.Entry> eldest) {
+				return size() > maxMemoryEntries;
+			}
+		};
+		paths = new LinkedHashMap<String, PathKey>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, PathKey> eldest) {
+				return size() > MAX_PATH_ENTRIES;
+			}
+		};
+		disk = directory == null ? null : new CacheDirectory(directory,
+				maxDiskEntries);
+		this.negativeTtlMillis = negativeTtlMillis;
+	}
+
+	/**
+	 * 文件的缓存键。路径、大小和修改时间与上次相同时直接返回上次的指纹
+	 */
+	public String keyFor(File file) throws IOException {
+		long length = file.length();
+		long lastModified = file.lastModified();
+		String fingerprint = knownKeyFor(file, length, lastModified);
+		if (fingerprint == null) {
+			fingerprint = fingerprint(file);
+			remember(file, length, lastModified, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * 不读取文件内容的查找：路径、大小和修改时间与上次相同时返回上次的指纹
+	 *
+	 * @return 文件没有记录或已改变时返回null，此时应读入内容后调用{@link #keyFor(File, byte[])}
+	 */
+	public String knownKeyFor(File file) {
+		return knownKeyFor(file, file.length(), file.lastModified());
+	}
+
+	/**
+	 * 已读入内存的文件内容的缓存键，同时记下文件的大小和修改时间，下次可由{@link #knownKeyFor(File)}直接查到
+	 *
+	 * @param data
+	 *            文件的全部内容
+	 */
+	public String keyFor(File file, byte[] data) {
+		long lastModified = file.lastModified();
+		String fingerprint = fingerprint(data);
+		// 读取后文件又被改写时不记录，以免大小、时间与内容对不上
+		if (file.length() == data.length) {
+			remember(file, data.length, lastModified, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	private String knownKeyFor(File file, long length, long lastModified) {
+		synchronized (paths) {
+			PathKey key = paths.get(file.getAbsolutePath());
+			if (key != null && key.length == length
+					&& key.lastModified == lastModified) {
+				return key.fingerprint;
+			}
+		}
+		return null;
+	}
+
+	private void remember(File file, long length, long lastModified,
+			String fingerprint) {
+		synchronized (paths) {
+			paths.put(file.getAbsolutePath(), new PathKey(length, lastModified,
+					fingerprint));
+		}
+	}
+
+	/**
+	 * 已读入内存的图片数据的缓存键，与同样内容的文件的{@link #keyFor(File)}相同
+	 */
+	public static String fingerprint(byte[] data) {
+		MessageDigest digest = CacheDirectory.newSha1();
+		updateLength(digest, data.length);
+		digest.update(data);
+		return CacheDirectory.toHex(digest.digest());
+	}
+
+	private static String fingerprint(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			MessageDigest digest = CacheDirectory.newSha1();
+			updateLength(digest, file.length());
+			byte[] buffer = new byte[READ_BUFFER_SIZE];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, count);
+			}
+			return CacheDirectory.toHex(digest.digest());
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return 缓存的结果；没有缓存或未找到条码的结果已过期时返回null
+	 */
+	public Entry get(String key) {
+		Entry entry;
+		synchronized (memory) {
+			entry = memory.get(key);
+		}
+		if (entry == null) {
+			entry = readDisk(key);
+			if (entry == null) {
+				return null;
+			}
+			synchronized (memory) {
+				memory.put(key, entry);
+			}
+		}
+		if (!entry.isFound()
+				&& System.currentTimeMillis() - entry.getTimestamp() > negativeTtlMillis) {
+			remove(key);
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * @param result
+	 *            解码结果，为null表示没有找到条码
+	 */
+	public void put(String key, Result result) {
+		Entry entry = new Entry(result, System.currentTimeMillis());
+		synchronized (memory) {
+			memory.put(key, entry);
+		}
+		writeDisk(key, entry);
+	}
+
+	private void remove(String key) {
+		synchronized (memory) {
+			memory.remove(key);
+		}
+		if (disk != null) {
+			disk.delete(key);
+		}
+	}
+
+	private Entry readDisk(String key) {
+		if (disk == null) {
+			return null;
+		}
+		File file = disk.file(key);
+		if (!file.exists()) {
+			return null;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(file));
+			if (in.readByte() != DISK_FORMAT_VERSION) {
+				return null;
+			}
+			long timestamp = in.readLong();
+			Entry entry;
+			if (in.readBoolean()) {
+				BarcodeFormat format = BarcodeFormat.valueOf(in.readUTF());
+				byte[] text = new byte[in.readInt()];
+				in.readFully(text);
+				ResultPoint[] points = new ResultPoint[in.readUnsignedByte()];
+				for (int i = 0; i < points.length; i++) {
+					points[i] = new ResultPoint(in.readFloat(), in.readFloat());
+				}
+				entry = new Entry(new Result(new String(text, "UTF-8"), null,
+						points, format, timestamp), timestamp);
+			}
+			else {
+				entry = new Entry(null, timestamp);
+			}
+			// 按修改时间淘汰，命中的结果保留得更久
+			file.setLastModified(System.currentTimeMillis());
+			return entry;
+		}
+		catch (IOException e) {
+			// 文件损坏，当作没有缓存
+			file.delete();
+			return null;
+		}
+		catch (IllegalArgumentException e) {
+			file.delete();
+			return null;
+		}
+		finally {
+			CacheDirectory.closeQuietly(in);
+		}
+	}
+
+	private void writeDisk(String key, Entry entry) {
+		if (disk == null) {
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeByte(DISK_FORMAT_VERSION);
+			out.writeLong(entry.getTimestamp());
+			Result result = entry.getResult();
+			out.writeBoolean(result != null);
+			if (result != null) {
+				out.writeUTF(result.getBarcodeFormat().name());
+				byte[] text = result.getText().getBytes("UTF-8");
+				out.writeInt(text.length);
+				out.write(text);
+				ResultPoint[] points = result.getResultPoints();
+				int count = 0;
+				if (points != null) {
+					for (ResultPoint point : points) {
+						if (point != null && count < 255) {
+							count++;
+						}
+					}
+				}
+				out.writeByte(count);
+				for (int i = 0, written = 0; written < count; i++) {
+					if (points[i] != null) {
+						out.writeFloat(points[i].getX());
+						out.writeFloat(points[i].getY());
+						written++;
+					}
+				}
+			}
+			out.flush();
+		}
+		catch (IOException e) {
+			// 写入内存不会失败
+			throw new IllegalStateException(e);
+		}
+		disk.write(key, bytes);
+	}
+
+	private static void updateLength(MessageDigest digest, long length) {
+		for (int i = 56; i >= 0; i -= 8) {
+			digest.update((byte) (length >>> i));
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.google.zxing.decode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 带名字的扫描区域，位置按画面宽高的比例表示（0~1），与预览分辨率无关。创建后不再修改
+ *
+ * @author hugo
+ *
+ */
+public final class ScanRegion {
+
+	private final String name;
+	private final float left;
+	private final float top;
+	private final float right;
+	private final float bottom;
+
+	/**
+	 * @param name
+	 *            区域名，随结果一起返回
+	 * @param left
+	 *            左边界占画面宽度的比例，下同
+	 * @throws IllegalArgumentException
+	 *             名字为空，或区域不在0~1之内，或宽高不大于0
+	 */
+	public ScanRegion(String name, float left, float top, float right,
+			float bottom) {
+		if (name == null || name.length() == 0) {
+			throw new IllegalArgumentException("Region name is empty");
+		}
+		if (!(left >= 0 && top >= 0 && right <= 1 && bottom <= 1
+				&& left < right && top < bottom)) {
+			throw new IllegalArgumentException("Bad region " + name + ": "
+					+ left + ',' + top + ',' + right + ',' + bottom);
+		}
+		this.name = name;
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+	}
+
+	/**
+	 * 把画面等分成rows行columns列，区域名为“行-列”，从1开始
+	 */
+	public static List<ScanRegion> grid(int rows, int columns) {
+		if (rows <= 0 || columns <= 0) {
+			throw new IllegalArgumentException("Bad grid " + rows + 'x'
+					+ columns);
+		}
+		List<ScanRegion> regions = new ArrayList<ScanRegion>(rows * columns);
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				regions.add(new ScanRegion((row + 1) + "-" + (column + 1),
+						(float) column / columns, (float) row / rows,
+						(float) (column + 1) / columns, (float) (row + 1)
+								/ rows));
+			}
+		}
+		return Collections.unmodifiableList(regions);
+	}
+
+	/**
+	 * 解析“名字:left,top,right,bottom”的列表，各区域之间用分号分隔，如
+	 * “left:0,0,0.5,1;right:0.5,0,1,1”
+	 *
+	 * @return 不可修改；regions为null或空时为空列表
+	 * @throws IllegalArgumentException
+	 *             格式不对
+	 */
+	public static List<ScanRegion> parseList(String regions) {
+		if (regions == null || regions.trim().length() == 0) {
+			return Collections.emptyList();
+		}
+		List<ScanRegion> result = new ArrayList<ScanRegion>();
+		for (String region : regions.split(";")) {
+			region = region.trim();
+			if (region.length() == 0) {
+				continue;
+			}
+			int colon = region.lastIndexOf(':');
+			String[] bounds = region.substring(colon + 1).split(",");
+			if (colon <= 0 || bounds.length != 4) {
+				throw new IllegalArgumentException("Bad region: " + region);
+			}
+			try {
+				result.add(new ScanRegion(region.substring(0, colon).trim(),
+						Float.parseFloat(bounds[0]), Float
+								.parseFloat(bounds[1]), Float
+								.parseFloat(bounds[2]), Float
+								.parseFloat(bounds[3])));
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Bad region: " + region, e);
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 换算成画面中的像素区域，至少1像素
+	 *
+	 * @return {left, top, width, height}
+	 */
+	public int[] crop(int width, int height) {
+		int cropLeft = Math.min(width - 1, (int) (left * width));
+		int cropTop = Math.min(height - 1, (int) (top * height));
+		int cropRight = Math.max(cropLeft + 1, Math.round(right * width));
+		int cropBottom = Math.max(cropTop + 1, Math.round(bottom * height));
+		return new int[] { cropLeft, cropTop, cropRight - cropLeft,
+				cropBottom - cropTop };
+	}
+
+	@Override
+	public String toString() {
+		return name + ':' + left + ',' + top + ',' + right + ',' + bottom;
+	}
+}
@@ -0,0 +1,53 @@
+package com.google.zxing.decode;
+
+import com.google.zxing.ResultPoint;
+import com.google.zxing.qrcode.detector.FinderPattern;
+
+/**
+ * 带模块大小估计的可疑点。二维码的定位图形会给出模块大小，坐标换算时用它保留这一信息，
+ * 供自动变焦判断码是否太小
+ *
+ * @author hugo
+ *
+ */
+public final class SizedResultPoint extends ResultPoint {
+
+	private final float moduleSize;
+
+	public SizedResultPoint(float x, float y, float moduleSize) {
+		super(x, y);
+		this.moduleSize = moduleSize;
+	}
+
+	/**
+	 * @return 估计的模块边长，单位与坐标相同
+	 */
+	public float getModuleSize() {
+		return moduleSize;
+	}
+
+	/**
+	 * 坐标乘以scale再加上dx、dy，模块大小也乘以scale；不知道模块大小时返回普通的ResultPoint
+	 */
+	static ResultPoint transform(ResultPoint point, int scale, float dx,
+			float dy) {
+		float x = point.getX() * scale + dx;
+		float y = point.getY() * scale + dy;
+		float moduleSize = moduleSize(point);
+		return moduleSize > 0 ? new SizedResultPoint(x, y, moduleSize * scale)
+				: new ResultPoint(x, y);
+	}
+
+	/**
+	 * @return 点所带的模块大小，不知道时为0
+	 */
+	static float moduleSize(ResultPoint point) {
+		if (point instanceof SizedResultPoint) {
+			return ((SizedResultPoint) point).moduleSize;
+		}
+		if (point instanceof FinderPattern) {
+			return ((FinderPattern) point).getEstimatedModuleSize();
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,328 @@
+package com.google.zxing.encode;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.DaemonExecutors;
+import com.google.zxing.decode.DecodeFormats;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+/**
+ * 批量生成条码：从迭代器中依次取内容，在线程池中按模块分辨率编码，结果按输入顺序交给{@link Sink}，
+ * 可以同时写成1位PNG文件。同时处理的条目数有上限，内存与条目总数无关；hints只构造一次。
+ * 支持MultiFormatWriter能生成的一维码、二维码和Data Matrix等格式，不依赖Android
+ *
+ * @author hugo
+ *
+ */
+public final class BatchEncoder {
+
+	/**
+	 * 每个工作线程最多排队的条目数
+	 */
+	private static final int QUEUE_PER_THREAD = 4;
+
+	/**
+	 * Data Matrix默认的留白模块数，MultiFormatWriter生成的Data Matrix没有留白
+	 */
+	private static final int DATA_MATRIX_QUIET_ZONE = 2;
+
+	/**
+	 * 一维码默认的左右留白之和（模块数）。MultiFormatWriter给EAN-13的留白只有3个模块，
+	 * 小于解码时要求的空白区，生成的图片单独扫描时解不出来
+	 */
+	private static final int ONE_D_MARGIN = 20;
+
+	/**
+	 * 接收结果，在调用encode的线程中按输入顺序调用
+	 */
+	public interface Sink {
+
+		void onEncoded(Item item) throws IOException;
+	}
+
+	/**
+	 * 一条内容的生成结果
+	 */
+	public static final class Item {
+
+		private final int index;
+		private final String contents;
+		private final PackedBitMatrix matrix;
+		private final File file;
+		private final String error;
+		private final long encodeMillis;
+		private final long writeMillis;
+
+		Item(int index, String contents, PackedBitMatrix matrix, File file,
+				String error, long encodeMillis, long writeMillis) {
+			this.index = index;
+			this.contents = contents;
+			this.matrix = matrix;
+			this.file = file;
+			this.error = error;
+			this.encodeMillis = encodeMillis;
+			this.writeMillis = writeMillis;
+		}
+
+		/**
+		 * @return 在输入中的序号，从0开始
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		public String getContents() {
+			return contents;
+		}
+
+		/**
+		 * @return 模块分辨率的矩阵，失败时为null
+		 */
+		public PackedBitMatrix getMatrix() {
+			return matrix;
+		}
+
+		/**
+		 * @return 写出的PNG文件，不写文件或失败时为null
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return 失败原因，如内容不符合格式要求；成功时为null
+		 */
+		public String getError() {
+			return error;
+		}
+
+		public long getEncodeMillis() {
+			return encodeMillis;
+		}
+
+		public long getWriteMillis() {
+			return writeMillis;
+		}
+	}
+
+	private final BarcodeFormat format;
+
+	private final Map<EncodeHintType, Object> hints;
+
+	/**
+	 * 编码后在四周补上的留白模块数，只用于不支持留白参数的Data Matrix
+	 */
+	private final int quietZone;
+
+	private final int threads;
+
+	private final MultiFormatWriter writer = new MultiFormatWriter();
+
+	/**
+	 * @param ecLevel
+	 *            二维码纠错级别，为null时用默认值
+	 * @param margin
+	 *            留白的模块数，为{@link EncodeHints#DEFAULT_MARGIN}时用默认值；一维码默认左右共留20个模块，
+	 *            Data Matrix默认四周各留2个模块
+	 * @param characterSet
+	 *            字符编码，可以为null
+	 * @param threads
+	 *            工作线程数
+	 */
+	public BatchEncoder(BarcodeFormat format, ErrorCorrectionLevel ecLevel,
+			int margin, String characterSet, int threads) {
+		this.format = format;
+		if (margin < 0 && DecodeFormats.ONE_D_FORMATS.contains(format)) {
+			margin = ONE_D_MARGIN;
+		}
+		this.hints = EncodeHints.build(format, ecLevel, margin, characterSet);
+		if (format == BarcodeFormat.DATA_MATRIX) {
+			quietZone = margin >= 0 ? margin : DATA_MATRIX_QUIET_ZONE;
+		}
+		else {
+			quietZone = 0;
+		}
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * 只生成矩阵，交给sink
+	 *
+	 * @return 处理的条目数
+	 */
+	public int encode(Iterator<String> payloads, Sink sink)
+			throws IOException, InterruptedException {
+		return run(payloads, null, 0, 0, sink);
+	}
+
+	/**
+	 * 一维码的条高为{@link PngWriter#DEFAULT_BAR_HEIGHT}
+	 *
+	 * @see #encodeToPng(Iterator, File, int, int, Sink)
+	 */
+	public int encodeToPng(Iterator<String> payloads, File directory,
+			int scale, Sink sink) throws IOException, InterruptedException {
+		return encodeToPng(payloads, directory, scale,
+				PngWriter.DEFAULT_BAR_HEIGHT, sink);
+	}
+
+	/**
+	 * 生成矩阵并在工作线程中写成directory下按序号命名的PNG文件（00000000.png起），再交给sink
+	 *
+	 * @param scale
+	 *            每个模块的像素数
+	 * @param barHeight
+	 *            一维码的条高，按模块数计；二维码忽略
+	 * @param sink
+	 *            可以为null
+	 * @return 处理的条目数
+	 */
+	public int encodeToPng(Iterator<String> payloads, File directory,
+			int scale, int barHeight, Sink sink) throws IOException,
+			InterruptedException {
+		if (scale < 1) {
+			throw new IllegalArgumentException("Bad scale: " + scale);
+		}
+		if (barHeight < 1) {
+			throw new IllegalArgumentException("Bad bar height: " + barHeight);
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		return run(payloads, directory, scale, barHeight, sink);
+	}
+
+	/**
+	 * 调用线程提交任务并按提交顺序取结果；队列满时暂停读取输入，保证内存有界
+	 */
+	private int run(Iterator<String> payloads, final File directory,
+			final int scale, final int barHeight, Sink sink)
+			throws IOException, InterruptedException {
+		ExecutorService executor = DaemonExecutors.newFixedThreadPool(
+				"BatchEncoder", threads);
+		BlockingQueue<Future<Item>> pending = new ArrayBlockingQueue<Future<Item>>(
+				threads * QUEUE_PER_THREAD);
+		int count = 0;
+		try {
+			int submitted = 0;
+			while (payloads.hasNext() || !pending.isEmpty()) {
+				while (payloads.hasNext() && pending.remainingCapacity() > 0) {
+					final int index = submitted++;
+					final String contents = payloads.next();
+					pending.put(executor.submit(new Callable<Item>() {
+						@Override
+						public Item call() {
+							return encodeOne(index, contents, directory, scale,
+									barHeight);
+						}
+					}));
+				}
+				Item item;
+				try {
+					item = pending.take().get();
+				}
+				catch (ExecutionException e) {
+					// encodeOne已处理所有异常，这里不会发生
+					throw new IllegalStateException(e.getCause());
+				}
+				if (sink != null) {
+					sink.onEncoded(item);
+				}
+				count++;
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return count;
+	}
+
+	private Item encodeOne(int index, String contents, File directory,
+			int scale, int barHeight) {
+		long start = System.nanoTime();
+		PackedBitMatrix matrix;
+		try {
+			BitMatrix modules = writer.encode(contents, format, 0, 0, hints);
+			if (quietZone > 0) {
+				modules = addQuietZone(modules, quietZone);
+			}
+			matrix = PackedBitMatrix.pack(modules);
+		}
+		catch (WriterException e) {
+			return new Item(index, contents, null, null,
+					String.valueOf(e.getMessage()), elapsedMillis(start), 0);
+		}
+		catch (IllegalArgumentException e) {
+			// 如EAN-13位数不对
+			return new Item(index, contents, null, null,
+					String.valueOf(e.getMessage()), elapsedMillis(start), 0);
+		}
+		long encodeMillis = elapsedMillis(start);
+		if (directory == null) {
+			return new Item(index, contents, matrix, null, null, encodeMillis,
+					0);
+		}
+
+		long writeStart = System.nanoTime();
+		File file = new File(directory, String.format(Locale.US, "%08d.png",
+				index));
+		try {
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(
+					file), 8 * 1024);
+			try {
+				PngWriter.write(matrix, scale, barHeight, out);
+			}
+			finally {
+				out.close();
+			}
+		}
+		catch (IOException e) {
+			file.delete();
+			return new Item(index, contents, matrix, null,
+					String.valueOf(e.getMessage()), encodeMillis,
+					elapsedMillis(writeStart));
+		}
+		return new Item(index, contents, matrix, file, null, encodeMillis,
+				elapsedMillis(writeStart));
+	}
+
+	/**
+	 * 在四周各加margin个白色模块
+	 */
+	private static BitMatrix addQuietZone(BitMatrix modules, int margin) {
+		int width = modules.getWidth();
+		int height = modules.getHeight();
+		BitMatrix padded = new BitMatrix(width + 2 * margin, height + 2
+				* margin);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (modules.get(x, y)) {
+					padded.set(x + margin, y + margin);
+				}
+			}
+		}
+		return padded;
+	}
+
+	private static long elapsedMillis(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1000000;
+	}
+}
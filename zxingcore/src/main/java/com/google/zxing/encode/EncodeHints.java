@@ -0,0 +1,54 @@
+package com.google.zxing.encode;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+/**
+ * 编码参数的构造，不依赖Android
+ *
+ * @author hugo
+ *
+ */
+public final class EncodeHints {
+
+	/**
+	 * 使用各格式默认的留白
+	 */
+	public static final int DEFAULT_MARGIN = -1;
+
+	private EncodeHints() {
+	}
+
+	/**
+	 * 构造编码参数
+	 *
+	 * @param format
+	 *            编码格式，纠错级别只对二维码有效
+	 * @param ecLevel
+	 *            二维码纠错级别，为null时用默认的L
+	 * @param margin
+	 *            留白的模块数，为{@link #DEFAULT_MARGIN}时用默认值；Data Matrix不支持
+	 * @param characterSet
+	 *            字符编码，可以为null
+	 * @return 可修改的hints
+	 */
+	public static Map<EncodeHintType, Object> build(BarcodeFormat format,
+			ErrorCorrectionLevel ecLevel, int margin, String characterSet) {
+		Map<EncodeHintType, Object> hints = new EnumMap<EncodeHintType, Object>(
+				EncodeHintType.class);
+		if (characterSet != null) {
+			hints.put(EncodeHintType.CHARACTER_SET, characterSet);
+		}
+		if (ecLevel != null && format == BarcodeFormat.QR_CODE) {
+			hints.put(EncodeHintType.ERROR_CORRECTION, ecLevel);
+		}
+		if (margin >= 0) {
+			hints.put(EncodeHintType.MARGIN, margin);
+		}
+		return hints;
+	}
+}
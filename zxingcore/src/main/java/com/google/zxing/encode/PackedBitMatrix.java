@@ -0,0 +1,121 @@
+package com.google.zxing.encode;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * 按行紧凑存放的模块矩阵：每个模块一位，每行从高位起按字节对齐，1表示黑色模块。
+ * 模块分辨率的二维码只有几百到几千字节，适合缓存到磁盘或在线程间传递，需要时再放大绘制。
+ * 不可修改，线程安全
+ *
+ * @author hugo
+ *
+ */
+public final class PackedBitMatrix {
+
+	private final int width;
+	private final int height;
+	private final int rowBytes;
+	private final byte[] bits;
+
+	private PackedBitMatrix(int width, int height, byte[] bits) {
+		this.width = width;
+		this.height = height;
+		this.rowBytes = (width + 7) / 8;
+		this.bits = bits;
+	}
+
+	/**
+	 * 按整段连续的黑色模块打包
+	 */
+	public static PackedBitMatrix pack(BitMatrix matrix) {
+		int width = matrix.getWidth();
+		int height = matrix.getHeight();
+		int rowBytes = (width + 7) / 8;
+		byte[] bits = new byte[rowBytes * height];
+		BitArray row = new BitArray(width);
+		for (int y = 0; y < height; y++) {
+			row = matrix.getRow(y, row);
+			int offset = y * rowBytes;
+			int x = row.getNextSet(0);
+			while (x < width) {
+				int end = Math.min(width, row.getNextUnset(x));
+				for (; x < end; x++) {
+					bits[offset + (x >> 3)] |= 0x80 >>> (x & 7);
+				}
+				x = row.getNextSet(end);
+			}
+		}
+		return new PackedBitMatrix(width, height, bits);
+	}
+
+	public BitMatrix unpack() {
+		BitMatrix matrix = new BitMatrix(width, height);
+		for (int y = 0; y < height; y++) {
+			int offset = y * rowBytes;
+			for (int x = 0; x < width; x++) {
+				if ((bits[offset + (x >> 3)] & (0x80 >>> (x & 7))) != 0) {
+					matrix.set(x, y);
+				}
+			}
+		}
+		return matrix;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return 每行的字节数
+	 */
+	public int getRowBytes() {
+		return rowBytes;
+	}
+
+	public boolean get(int x, int y) {
+		return (bits[y * rowBytes + (x >> 3)] & (0x80 >>> (x & 7))) != 0;
+	}
+
+	/**
+	 * 复制第y行的字节到row的offset处
+	 */
+	public void getRow(int y, byte[] row, int offset) {
+		System.arraycopy(bits, y * rowBytes, row, offset, rowBytes);
+	}
+
+	/**
+	 * @return 存放全部模块需要的字节数
+	 */
+	public int getByteCount() {
+		return bits.length;
+	}
+
+	/**
+	 * 依次写入宽、高和按行打包的位
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(width);
+		out.writeInt(height);
+		out.write(bits);
+	}
+
+	public static PackedBitMatrix readFrom(DataInput in) throws IOException {
+		int width = in.readInt();
+		int height = in.readInt();
+		if (width <= 0 || height <= 0 || (long) width * height > 1 << 26) {
+			throw new IOException("Bad matrix size: " + width + "x" + height);
+		}
+		byte[] bits = new byte[(width + 7) / 8 * height];
+		in.readFully(bits);
+		return new PackedBitMatrix(width, height, bits);
+	}
+}
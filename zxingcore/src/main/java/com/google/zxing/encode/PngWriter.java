@@ -0,0 +1,137 @@
+package com.google.zxing.encode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 把模块矩阵写成1位灰度PNG，不依赖ImageIO或Android的Bitmap。每个模块放大为scale x scale个像素，
+ * 每个模块行只展开一次，重复写入scale次；480x480的二维码只有几KB。一维码的矩阵只有一行，
+ * 按条高重复写入，否则只有scale个像素高，无法扫描
+ *
+ * @author hugo
+ *
+ */
+public final class PngWriter {
+
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G',
+			'\r', '\n', 0x1a, '\n' };
+
+	/**
+	 * 一维码默认的条高（模块数），约为EAN-13宽度的一半
+	 */
+	public static final int DEFAULT_BAR_HEIGHT = 50;
+
+	private PngWriter() {
+	}
+
+	/**
+	 * 一维码使用{@link #DEFAULT_BAR_HEIGHT}
+	 *
+	 * @param scale
+	 *            每个模块的像素数，至少为1
+	 */
+	public static void write(PackedBitMatrix matrix, int scale,
+			OutputStream out) throws IOException {
+		write(matrix, scale, DEFAULT_BAR_HEIGHT, out);
+	}
+
+	/**
+	 * @param scale
+	 *            每个模块的像素数，至少为1
+	 * @param barHeight
+	 *            一维码（只有一行模块）的条高，按模块数计，至少为1；二维码忽略
+	 */
+	public static void write(PackedBitMatrix matrix, int scale,
+			int barHeight, OutputStream out) throws IOException {
+		if (scale < 1) {
+			throw new IllegalArgumentException("Bad scale: " + scale);
+		}
+		if (barHeight < 1) {
+			throw new IllegalArgumentException("Bad bar height: " + barHeight);
+		}
+		// 一维码的唯一一行重复到条高
+		int rowRepeat = matrix.getHeight() == 1 ? barHeight * scale : scale;
+		int width = matrix.getWidth() * scale;
+		int height = matrix.getHeight() * rowRepeat;
+		DataOutputStream data = new DataOutputStream(out);
+		data.write(SIGNATURE);
+
+		ByteArrayOutputStream chunk = new ByteArrayOutputStream(13);
+		DataOutputStream header = new DataOutputStream(chunk);
+		header.writeInt(width);
+		header.writeInt(height);
+		header.writeByte(1); // 位深度
+		header.writeByte(0); // 灰度
+		header.writeByte(0); // deflate
+		header.writeByte(0); // 自适应滤波
+		header.writeByte(0); // 不交错
+		writeChunk(data, "IHDR", chunk);
+
+		chunk = new ByteArrayOutputStream(matrix.getByteCount() + 64);
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try {
+			DeflaterOutputStream idat = new DeflaterOutputStream(chunk,
+					deflater);
+			byte[] modules = new byte[matrix.getRowBytes()];
+			// 每行前一个字节为滤波类型0
+			byte[] pixels = new byte[1 + (width + 7) / 8];
+			for (int y = 0; y < matrix.getHeight(); y++) {
+				matrix.getRow(y, modules, 0);
+				expandRow(modules, matrix.getWidth(), scale, pixels);
+				for (int i = 0; i < rowRepeat; i++) {
+					idat.write(pixels);
+				}
+			}
+			idat.finish();
+		}
+		finally {
+			deflater.end();
+		}
+		writeChunk(data, "IDAT", chunk);
+		writeChunk(data, "IEND", new ByteArrayOutputStream(0));
+		data.flush();
+	}
+
+	/**
+	 * PNG灰度中0为黑色，与矩阵中1为黑色相反，展开的同时取反
+	 */
+	private static void expandRow(byte[] modules, int moduleCount, int scale,
+			byte[] pixels) {
+		if (scale == 1) {
+			for (int i = 0; i < modules.length; i++) {
+				pixels[i + 1] = (byte) ~modules[i];
+			}
+			return;
+		}
+		for (int i = 1; i < pixels.length; i++) {
+			pixels[i] = (byte) 0xFF;
+		}
+		for (int x = 0; x < moduleCount; x++) {
+			if ((modules[x >> 3] & (0x80 >>> (x & 7))) == 0) {
+				continue;
+			}
+			int end = (x + 1) * scale;
+			for (int p = x * scale; p < end; p++) {
+				pixels[1 + (p >> 3)] &= ~(0x80 >>> (p & 7));
+			}
+		}
+	}
+
+	private static void writeChunk(DataOutputStream out, String type,
+			ByteArrayOutputStream body) throws IOException {
+		byte[] typeBytes = type.getBytes("US-ASCII");
+		byte[] bytes = body.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(bytes);
+		out.writeInt(bytes.length);
+		out.write(typeBytes);
+		out.write(bytes);
+		out.writeInt((int) crc.getValue());
+	}
+}
@@ -0,0 +1,77 @@
+package com.google.zxing.encode;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * 把模块矩阵写成SVG：坐标以模块为单位，每行连续的黑色模块合并为一个矩形子路径，全部放在一个path中，
+ * 打印或任意缩放都保持清晰
+ *
+ * @author hugo
+ *
+ */
+public final class SvgWriter {
+
+	private SvgWriter() {
+	}
+
+	/**
+	 * @param moduleSize
+	 *            每个模块在SVG中的默认尺寸（像素），只影响width和height属性
+	 */
+	public static void write(PackedBitMatrix matrix, int moduleSize,
+			Writer out) throws IOException {
+		int width = matrix.getWidth();
+		int height = matrix.getHeight();
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\""
+				+ width * moduleSize + "\" height=\"" + height * moduleSize
+				+ "\" viewBox=\"0 0 " + width + " " + height
+				+ "\" shape-rendering=\"crispEdges\">\n");
+		out.write("<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>\n");
+		out.write("<path fill=\"#000\" d=\"");
+		writePathData(matrix, out);
+		out.write("\"/>\n</svg>\n");
+	}
+
+	public static String toSvg(PackedBitMatrix matrix, int moduleSize) {
+		StringWriter out = new StringWriter(matrix.getByteCount() * 8 + 256);
+		try {
+			write(matrix, moduleSize, out);
+		}
+		catch (IOException e) {
+			// StringWriter不会抛出
+			throw new IllegalStateException(e);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * 路径数据，每段黑色模块为"Mx yhNv1h-Nz"
+	 */
+	public static void writePathData(PackedBitMatrix matrix, Writer out)
+			throws IOException {
+		int width = matrix.getWidth();
+		StringBuilder segment = new StringBuilder(32);
+		for (int y = 0; y < matrix.getHeight(); y++) {
+			int x = 0;
+			while (x < width) {
+				if (!matrix.get(x, y)) {
+					x++;
+					continue;
+				}
+				int start = x;
+				while (x < width && matrix.get(x, y)) {
+					x++;
+				}
+				int length = x - start;
+				segment.setLength(0);
+				segment.append('M').append(start).append(' ').append(y)
+						.append('h').append(length).append("v1h-")
+						.append(length).append('z');
+				out.append(segment);
+			}
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package com.google.zxing.qrcode.encoder;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.CharacterSetECI;
+import com.google.zxing.common.DaemonExecutors;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Mode;
+import com.google.zxing.qrcode.decoder.Version;
+
+/**
+ * 与{@link Encoder}结果完全相同的二维码编码，只是8种掩码的构造和评分在共用的线程池中并行进行。
+ * 版本较高时编码的大部分时间花在依次构造并评分8个掩码上，并行后明显加快；版本较低时任务调度的开销
+ * 超过收益，仍在调用线程中依次评分。
+ * <p>
+ * 掩码选择与Encoder相同：惩罚分最低者，分数相同时取序号最小的，因此输出逐字节一致。
+ * 每个线程复用同一尺寸的ByteMatrix评分，不为每个候选掩码分配新矩阵。
+ * <p>
+ * 放在Encoder的包中以使用其包内可见的方法；Encoder中私有的版本选择和掩码评分按3.1.1的实现重写
+ *
+ * @author hugo
+ *
+ */
+public final class ParallelMaskEncoder {
+
+	/**
+	 * 从这个版本起并行评分掩码
+	 */
+	public static final int PARALLEL_MIN_VERSION = 10;
+
+	/**
+	 * 与QRCodeWriter相同的默认留白
+	 */
+	private static final int QUIET_ZONE_SIZE = 4;
+
+	private static final String DEFAULT_BYTE_MODE_ENCODING = "ISO-8859-1";
+
+	private static final int THREADS = Runtime.getRuntime()
+			.availableProcessors();
+
+	private static final DaemonExecutors.Lazy EXECUTOR = new DaemonExecutors.Lazy(
+			"MaskEncoder", THREADS);
+
+	/**
+	 * 每个线程评分用的矩阵，尺寸不同时重新分配
+	 */
+	private static final ThreadLocal<ByteMatrix> SCRATCH = new ThreadLocal<ByteMatrix>();
+
+	private ParallelMaskEncoder() {
+	}
+
+	/**
+	 * 与QRCodeWriter.encode相同，生成width x height（不小于二维码加留白的尺寸）的矩阵，
+	 * width和height为0时为模块分辨率
+	 */
+	public static BitMatrix encode(String contents, int width, int height,
+			Map<EncodeHintType, ?> hints) throws WriterException {
+		if (contents.length() == 0) {
+			throw new IllegalArgumentException("Found empty contents");
+		}
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException(
+					"Requested dimensions are too small: " + width + 'x'
+							+ height);
+		}
+		ErrorCorrectionLevel ecLevel = ErrorCorrectionLevel.L;
+		int quietZone = QUIET_ZONE_SIZE;
+		if (hints != null) {
+			ErrorCorrectionLevel requestedECLevel = (ErrorCorrectionLevel) hints
+					.get(EncodeHintType.ERROR_CORRECTION);
+			if (requestedECLevel != null) {
+				ecLevel = requestedECLevel;
+			}
+			Integer quietZoneInt = (Integer) hints.get(EncodeHintType.MARGIN);
+			if (quietZoneInt != null) {
+				quietZone = quietZoneInt;
+			}
+		}
+		return renderResult(encode(contents, ecLevel, hints), width, height,
+				quietZone);
+	}
+
+	/**
+	 * 与{@link Encoder#encode(String, ErrorCorrectionLevel, Map)}相同
+	 */
+	public static QRCode encode(String content, ErrorCorrectionLevel ecLevel,
+			Map<EncodeHintType, ?> hints) throws WriterException {
+		String encoding = hints == null ? null : (String) hints
+				.get(EncodeHintType.CHARACTER_SET);
+		if (encoding == null) {
+			encoding = DEFAULT_BYTE_MODE_ENCODING;
+		}
+		Mode mode = chooseMode(content, encoding);
+
+		BitArray headerBits = new BitArray();
+		if (mode == Mode.BYTE && !DEFAULT_BYTE_MODE_ENCODING.equals(encoding)) {
+			CharacterSetECI eci = CharacterSetECI
+					.getCharacterSetECIByName(encoding);
+			if (eci != null) {
+				headerBits.appendBits(Mode.ECI.getBits(), 4);
+				headerBits.appendBits(eci.getValue(), 8);
+			}
+		}
+		Encoder.appendModeInfo(mode, headerBits);
+
+		BitArray dataBits = new BitArray();
+		Encoder.appendBytes(content, mode, dataBits, encoding);
+
+		// 长度字段的位数取决于版本，先按版本1估计，再按估计的版本确定
+		int provisionalBitsNeeded = headerBits.getSize()
+				+ mode.getCharacterCountBits(Version.getVersionForNumber(1))
+				+ dataBits.getSize();
+		Version provisionalVersion = chooseVersion(provisionalBitsNeeded,
+				ecLevel);
+		int bitsNeeded = headerBits.getSize()
+				+ mode.getCharacterCountBits(provisionalVersion)
+				+ dataBits.getSize();
+		Version version = chooseVersion(bitsNeeded, ecLevel);
+
+		BitArray headerAndDataBits = new BitArray();
+		headerAndDataBits.appendBitArray(headerBits);
+		int numLetters = mode == Mode.BYTE ? dataBits.getSizeInBytes()
+				: content.length();
+		Encoder.appendLengthInfo(numLetters, version, mode, headerAndDataBits);
+		headerAndDataBits.appendBitArray(dataBits);
+
+		Version.ECBlocks ecBlocks = version.getECBlocksForLevel(ecLevel);
+		int numDataBytes = version.getTotalCodewords()
+				- ecBlocks.getTotalECCodewords();
+		Encoder.terminateBits(numDataBytes, headerAndDataBits);
+		BitArray finalBits = Encoder.interleaveWithECBytes(headerAndDataBits,
+				version.getTotalCodewords(), numDataBytes,
+				ecBlocks.getNumBlocks());
+
+		QRCode qrCode = new QRCode();
+		qrCode.setECLevel(ecLevel);
+		qrCode.setMode(mode);
+		qrCode.setVersion(version);
+
+		int maskPattern = chooseMaskPattern(finalBits, ecLevel, version);
+		qrCode.setMaskPattern(maskPattern);
+
+		int dimension = version.getDimensionForVersion();
+		ByteMatrix matrix = new ByteMatrix(dimension, dimension);
+		MatrixUtil.buildMatrix(finalBits, ecLevel, version, maskPattern,
+				matrix);
+		qrCode.setMatrix(matrix);
+		return qrCode;
+	}
+
+	private static int chooseMaskPattern(final BitArray bits,
+			final ErrorCorrectionLevel ecLevel, final Version version)
+			throws WriterException {
+		int[] penalties = new int[QRCode.NUM_MASK_PATTERNS];
+		if (version.getVersionNumber() < PARALLEL_MIN_VERSION || THREADS < 2) {
+			for (int maskPattern = 0; maskPattern < penalties.length; maskPattern++) {
+				penalties[maskPattern] = maskPenalty(bits, ecLevel, version,
+						maskPattern);
+			}
+		}
+		else {
+			// 其余掩码交给线程池，调用线程评分掩码0，不空等
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>(
+					penalties.length - 1);
+			ExecutorService pool = EXECUTOR.get();
+			for (int maskPattern = 1; maskPattern < penalties.length; maskPattern++) {
+				final int mask = maskPattern;
+				futures.add(pool.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws WriterException {
+						return maskPenalty(bits, ecLevel, version, mask);
+					}
+				}));
+			}
+			try {
+				penalties[0] = maskPenalty(bits, ecLevel, version, 0);
+				for (int i = 0; i < futures.size(); i++) {
+					penalties[i + 1] = futures.get(i).get();
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new WriterException(e);
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof WriterException) {
+					throw (WriterException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+			finally {
+				for (Future<Integer> future : futures) {
+					future.cancel(true);
+				}
+			}
+		}
+
+		// 与Encoder相同：分数相同时取序号最小的
+		int minPenalty = Integer.MAX_VALUE;
+		int bestMaskPattern = -1;
+		for (int maskPattern = 0; maskPattern < penalties.length; maskPattern++) {
+			if (penalties[maskPattern] < minPenalty) {
+				minPenalty = penalties[maskPattern];
+				bestMaskPattern = maskPattern;
+			}
+		}
+		return bestMaskPattern;
+	}
+
+	private static int maskPenalty(BitArray bits, ErrorCorrectionLevel ecLevel,
+			Version version, int maskPattern) throws WriterException {
+		int dimension = version.getDimensionForVersion();
+		ByteMatrix matrix = SCRATCH.get();
+		if (matrix == null || matrix.getWidth() != dimension) {
+			matrix = new ByteMatrix(dimension, dimension);
+			SCRATCH.set(matrix);
+		}
+		// buildMatrix会先清空矩阵
+		MatrixUtil.buildMatrix(bits, ecLevel, version, maskPattern, matrix);
+		return MaskUtil.applyMaskPenaltyRule1(matrix)
+				+ MaskUtil.applyMaskPenaltyRule2(matrix)
+				+ MaskUtil.applyMaskPenaltyRule3(matrix)
+				+ MaskUtil.applyMaskPenaltyRule4(matrix);
+	}
+
+	private static Version chooseVersion(int numInputBits,
+			ErrorCorrectionLevel ecLevel) throws WriterException {
+		for (int versionNum = 1; versionNum <= 40; versionNum++) {
+			Version version = Version.getVersionForNumber(versionNum);
+			int numBytes = version.getTotalCodewords();
+			int numEcBytes = version.getECBlocksForLevel(ecLevel)
+					.getTotalECCodewords();
+			int numDataBytes = numBytes - numEcBytes;
+			int totalInputBytes = (numInputBits + 7) / 8;
+			if (numDataBytes >= totalInputBytes) {
+				return version;
+			}
+		}
+		throw new WriterException("Data too big");
+	}
+
+	private static Mode chooseMode(String content, String encoding) {
+		if ("Shift_JIS".equals(encoding)) {
+			return isOnlyDoubleByteKanji(content) ? Mode.KANJI : Mode.BYTE;
+		}
+		return Encoder.chooseMode(content);
+	}
+
+	private static boolean isOnlyDoubleByteKanji(String content) {
+		byte[] bytes;
+		try {
+			bytes = content.getBytes("Shift_JIS");
+		}
+		catch (UnsupportedEncodingException ignored) {
+			return false;
+		}
+		int length = bytes.length;
+		if (length % 2 != 0) {
+			return false;
+		}
+		for (int i = 0; i < length; i += 2) {
+			int byte1 = bytes[i] & 0xFF;
+			if ((byte1 < 0x81 || byte1 > 0x9F) && (byte1 < 0xE0 || byte1 > 0xEB)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 与QRCodeWriter相同：整数倍放大并居中
+	 */
+	private static BitMatrix renderResult(QRCode code, int width, int height,
+			int quietZone) {
+		ByteMatrix input = code.getMatrix();
+		int inputWidth = input.getWidth();
+		int inputHeight = input.getHeight();
+		int qrWidth = inputWidth + (quietZone * 2);
+		int qrHeight = inputHeight + (quietZone * 2);
+		int outputWidth = Math.max(width, qrWidth);
+		int outputHeight = Math.max(height, qrHeight);
+
+		int multiple = Math.min(outputWidth / qrWidth, outputHeight / qrHeight);
+		int leftPadding = (outputWidth - (inputWidth * multiple)) / 2;
+		int topPadding = (outputHeight - (inputHeight * multiple)) / 2;
+
+		BitMatrix output = new BitMatrix(outputWidth, outputHeight);
+		for (int inputY = 0, outputY = topPadding; inputY < inputHeight; inputY++, outputY += multiple) {
+			for (int inputX = 0, outputX = leftPadding; inputX < inputWidth; inputX++, outputX += multiple) {
+				if (input.get(inputX, inputY) == 1) {
+					output.setRegion(outputX, outputY, multiple, multiple);
+				}
+			}
+		}
+		return output;
+	}
+}
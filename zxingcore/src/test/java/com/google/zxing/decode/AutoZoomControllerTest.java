@@ -0,0 +1,107 @@
+package com.google.zxing.decode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.zxing.ResultPoint;
+
+/**
+ * @author hugo
+ *
+ */
+public class AutoZoomControllerTest {
+
+	/**
+	 * 100%到480%，每级20%
+	 */
+	private static final int[] RATIOS = new int[20];
+
+	static {
+		for (int i = 0; i < RATIOS.length; i++) {
+			RATIOS[i] = 100 + i * 20;
+		}
+	}
+
+	@Test
+	public void zoomsInAfterSeveralSmallFrames() {
+		AutoZoomController controller = new AutoZoomController(RATIOS);
+		assertEquals(AutoZoomController.NO_CHANGE, smallFrame(controller));
+		assertEquals(AutoZoomController.NO_CHANGE, smallFrame(controller));
+		int zoom = smallFrame(controller);
+		// 模块1.5像素，放大2倍（一次最多）到200%
+		assertEquals(5, zoom);
+		assertEquals(5, controller.getZoom());
+	}
+
+	@Test
+	public void waitsForTheCameraToSettle() {
+		AutoZoomController controller = new AutoZoomController(RATIOS);
+		for (int i = 0; i < 3; i++) {
+			smallFrame(controller);
+		}
+		for (int i = 0; i < 3; i++) {
+			assertEquals(AutoZoomController.NO_CHANGE, smallFrame(controller));
+		}
+	}
+
+	@Test
+	public void framesWithoutCodesDoNotZoom() {
+		AutoZoomController controller = new AutoZoomController(RATIOS);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(AutoZoomController.NO_CHANGE,
+					controller.onDecodeFailed());
+		}
+		// 没有模块大小的点忽略
+		controller.foundPossibleResultPoint(new ResultPoint(1, 1));
+		assertEquals(AutoZoomController.NO_CHANGE, controller.onDecodeFailed());
+	}
+
+	@Test
+	public void largeModulesDoNotZoom() {
+		AutoZoomController controller = new AutoZoomController(RATIOS);
+		for (int i = 0; i < 10; i++) {
+			controller.foundPossibleResultPoint(new SizedResultPoint(1, 1, 6f));
+			assertEquals(AutoZoomController.NO_CHANGE,
+					controller.onDecodeFailed());
+		}
+	}
+
+	@Test
+	public void successRestoresTheInitialZoom() {
+		AutoZoomController controller = new AutoZoomController(RATIOS, 2);
+		assertEquals(2, controller.getZoom());
+		assertEquals(AutoZoomController.NO_CHANGE,
+				controller.onDecodeSucceeded());
+		for (int i = 0; i < 3; i++) {
+			smallFrame(controller);
+		}
+		assertTrue(controller.getZoom() > 2);
+		assertEquals(2, controller.onDecodeSucceeded());
+	}
+
+	@Test
+	public void manualZoomDisablesAutoZoom() {
+		AutoZoomController controller = new AutoZoomController(RATIOS);
+		controller.onManualZoom(7);
+		assertEquals(7, controller.getZoom());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(AutoZoomController.NO_CHANGE, smallFrame(controller));
+		}
+		assertEquals(AutoZoomController.NO_CHANGE,
+				controller.onDecodeSucceeded());
+		assertEquals(7, controller.getZoom());
+	}
+
+	@Test
+	public void initialZoomIsClamped() {
+		assertEquals(RATIOS.length - 1,
+				new AutoZoomController(RATIOS, 100).getZoom());
+	}
+
+	private static int smallFrame(AutoZoomController controller) {
+		controller.foundPossibleResultPoint(new SizedResultPoint(1, 1, 1.5f));
+		return controller.onDecodeFailed();
+	}
+}
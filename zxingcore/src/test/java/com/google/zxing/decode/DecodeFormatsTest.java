@@ -0,0 +1,69 @@
+package com.google.zxing.decode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+
+/**
+ * @author hugo
+ *
+ */
+public class DecodeFormatsTest {
+
+	@Test
+	public void productFormatsAreOneD() {
+		assertTrue(DecodeFormats.ONE_D_FORMATS
+				.containsAll(DecodeFormats.PRODUCT_FORMATS));
+		assertFalse(DecodeFormats.ONE_D_FORMATS
+				.contains(BarcodeFormat.QR_CODE));
+	}
+
+	@Test
+	public void defaultsToOneDQRCodeAndDataMatrix() {
+		Collection<?> formats = formats(DecodeFormats.buildHints(null, null));
+		EnumSet<BarcodeFormat> expected = EnumSet.of(BarcodeFormat.QR_CODE,
+				BarcodeFormat.DATA_MATRIX);
+		expected.addAll(DecodeFormats.ONE_D_FORMATS);
+		assertEquals(expected, formats);
+		assertEquals(expected, formats(DecodeFormats.buildHints(
+				Collections.<BarcodeFormat> emptySet(), null)));
+	}
+
+	@Test
+	public void usesTheGivenFormatsAndCharset() {
+		Map<DecodeHintType, Object> hints = DecodeFormats.buildHints(
+				DecodeFormats.QR_CODE_FORMATS, "UTF-8");
+		assertEquals(EnumSet.of(BarcodeFormat.QR_CODE), formats(hints));
+		assertEquals("UTF-8", hints.get(DecodeHintType.CHARACTER_SET));
+		assertNull(DecodeFormats.buildHints(null, null).get(
+				DecodeHintType.CHARACTER_SET));
+	}
+
+	@Test
+	public void hintsAreModifiable() {
+		Map<DecodeHintType, Object> hints = DecodeFormats.buildHints(
+				DecodeFormats.QR_CODE_FORMATS, null);
+		hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+		@SuppressWarnings("unchecked")
+		Collection<BarcodeFormat> formats = (Collection<BarcodeFormat>) hints
+				.get(DecodeHintType.POSSIBLE_FORMATS);
+		formats.add(BarcodeFormat.EAN_13);
+		// 不影响共享的常量
+		assertEquals(1, DecodeFormats.QR_CODE_FORMATS.size());
+	}
+
+	private static Collection<?> formats(Map<DecodeHintType, Object> hints) {
+		return (Collection<?>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+	}
+}
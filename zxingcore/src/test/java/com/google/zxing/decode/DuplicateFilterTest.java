@@ -0,0 +1,69 @@
+package com.google.zxing.decode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+/**
+ * @author hugo
+ *
+ */
+public class DuplicateFilterTest {
+
+	@Test
+	public void repeatWithinWindowIsDuplicate() {
+		DuplicateFilter filter = new DuplicateFilter(16, 1000);
+		assertTrue(filter.accept(qrCode("a"), 0));
+		assertFalse(filter.accept(qrCode("a"), 500));
+		// 每次看到都刷新时间
+		assertFalse(filter.accept(qrCode("a"), 1400));
+		assertTrue(filter.accept(qrCode("a"), 2500));
+	}
+
+	@Test
+	public void formatIsPartOfTheKey() {
+		DuplicateFilter filter = new DuplicateFilter(16, 1000);
+		assertTrue(filter.accept(qrCode("123"), 0));
+		assertTrue(filter.accept(new Result("123", null, null,
+				BarcodeFormat.CODE_128), 0));
+	}
+
+	@Test
+	public void foreverNeverExpires() {
+		DuplicateFilter filter = new DuplicateFilter(16,
+				DuplicateFilter.FOREVER);
+		assertTrue(filter.accept(qrCode("a"), 0));
+		assertFalse(filter.accept(qrCode("a"), Long.MAX_VALUE / 2));
+	}
+
+	@Test
+	public void expiredEntriesArePurged() {
+		DuplicateFilter filter = new DuplicateFilter(16, 1000);
+		filter.accept(qrCode("a"), 0);
+		filter.accept(qrCode("b"), 100);
+		filter.accept(qrCode("c"), 1050);
+		assertEquals(2, filter.size());
+	}
+
+	@Test
+	public void leastRecentlySeenIsEvicted() {
+		DuplicateFilter filter = new DuplicateFilter(2,
+				DuplicateFilter.FOREVER);
+		filter.accept(qrCode("a"), 0);
+		filter.accept(qrCode("b"), 1);
+		filter.accept(qrCode("a"), 2);
+		filter.accept(qrCode("c"), 3);
+		assertEquals(2, filter.size());
+		assertFalse(filter.accept(qrCode("a"), 4));
+		assertTrue(filter.accept(qrCode("b"), 5));
+	}
+
+	private static Result qrCode(String text) {
+		return new Result(text, null, null, BarcodeFormat.QR_CODE);
+	}
+}
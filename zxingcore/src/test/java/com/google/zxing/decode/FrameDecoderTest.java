@@ -0,0 +1,84 @@
+package com.google.zxing.decode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+/**
+ * @author hugo
+ *
+ */
+public class FrameDecoderTest {
+
+	/**
+	 * 3x2：1 2 3 / 4 5 6
+	 */
+	private static final byte[] FRAME = { 1, 2, 3, 4, 5, 6 };
+
+	@Test
+	public void rotatesClockwise() {
+		assertArrayEquals(new byte[] { 4, 1, 5, 2, 6, 3 },
+				FrameDecoder.rotate(FRAME, 3, 2, 90));
+		assertArrayEquals(new byte[] { 6, 5, 4, 3, 2, 1 },
+				FrameDecoder.rotate(FRAME, 3, 2, 180));
+		assertArrayEquals(new byte[] { 3, 6, 2, 5, 1, 4 },
+				FrameDecoder.rotate(FRAME, 3, 2, 270));
+	}
+
+	@Test
+	public void noRotationReturnsTheInput() {
+		assertSame(FRAME, FrameDecoder.rotate(FRAME, 3, 2, 0));
+	}
+
+	@Test
+	public void onlyUsesTheLuminancePlane() {
+		// NV21后面跟着色度数据，旋转时忽略
+		byte[] nv21 = { 1, 2, 3, 4, 5, 6, 9, 9, 9 };
+		assertArrayEquals(new byte[] { 4, 1, 5, 2, 6, 3 },
+				FrameDecoder.rotate(nv21, 3, 2, 90));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void otherAnglesAreRejected() {
+		FrameDecoder.rotate(FRAME, 3, 2, 45);
+	}
+
+	@Test
+	public void decodesAtEveryRotation() throws WriterException {
+		String contents = "frame decoder";
+		BitMatrix code = new QRCodeWriter().encode(contents,
+				BarcodeFormat.QR_CODE, 200, 200);
+		int width = 320;
+		int height = 240;
+		byte[] frame = new byte[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int codeX = x - (width - code.getWidth()) / 2;
+				int codeY = y - (height - code.getHeight()) / 2;
+				boolean dark = codeX >= 0 && codeY >= 0
+						&& codeX < code.getWidth() && codeY < code.getHeight()
+						&& code.get(codeX, codeY);
+				frame[y * width + x] = (byte) (dark ? 20 : 230);
+			}
+		}
+		FrameDecoder decoder = new FrameDecoder(DecodeFormats.buildHints(
+				Collections.singleton(BarcodeFormat.QR_CODE), null),
+				BinarizerType.HYBRID, false);
+		for (int rotation = 0; rotation < 360; rotation += 90) {
+			Result result = decoder.decode(frame, width, height, rotation);
+			assertNotNull("rotation " + rotation, result);
+			assertEquals(contents, result.getText());
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.google.zxing.decode;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * 并行二值化的结果必须与HybridBinarizer逐位一致。条带数固定，与运行测试的机器核数无关
+ *
+ * @author hugo
+ *
+ */
+public class ParallelHybridBinarizerTest {
+
+	/**
+	 * 不能整除块行数，条带边界不对齐
+	 */
+	private static final int THREADS = 3;
+
+	@Test
+	public void matchesBelowTheParallelThreshold() throws NotFoundException {
+		assertMatches(640, 480);
+		// 宽高都不是块大小的整数倍
+		assertMatches(637, 479);
+	}
+
+	@Test
+	public void matchesAboveTheParallelThreshold() throws NotFoundException {
+		assertMatches(1280, 1024);
+		assertMatches(1283, 1021);
+		assertMatches(1031, 1027);
+		assertMatches(1999, 1501);
+	}
+
+	@Test
+	public void matchesACroppedSource() throws NotFoundException {
+		// 裁剪后getMatrix()需要复制，偏移不是块大小的整数倍
+		byte[] luminances = scene(1600, 1200, 3);
+		LuminanceSource source = new PlanarYUVLuminanceSource(luminances,
+				1600, 1200, 13, 7, 1283, 1021, false);
+		assertEquals(new HybridBinarizer(source).getBlackMatrix(),
+				new ParallelHybridBinarizer(source, THREADS).getBlackMatrix());
+	}
+
+	private static void assertMatches(int width, int height)
+			throws NotFoundException {
+		LuminanceSource source = new PlanarYUVLuminanceSource(scene(width,
+				height, width * 31 + height), width, height, 0, 0, width,
+				height, false);
+		assertEquals(width + "x" + height,
+				new HybridBinarizer(source).getBlackMatrix(),
+				new ParallelHybridBinarizer(source, THREADS).getBlackMatrix());
+	}
+
+	/**
+	 * 从左到右变暗的光照上的深色方块和噪声，其中棋盘状分布着低对比度的平坦区域，
+	 * 这些块的黑点值取决于左方和上方的块
+	 */
+	private static byte[] scene(int width, int height, long seed) {
+		Random random = new Random(seed);
+		byte[] luminances = new byte[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int light = 220 - 120 * x / width;
+				if ((x / 97 + y / 89) % 2 == 0) {
+					if (((x / 11) + (y / 13)) % 3 == 0) {
+						light = light * 3 / 10;
+					}
+					light += random.nextInt(21) - 10;
+				}
+				else {
+					light += random.nextInt(5) - 2;
+				}
+				luminances[y * width + x] = (byte) Math.max(0,
+						Math.min(255, light));
+			}
+		}
+		return luminances;
+	}
+}
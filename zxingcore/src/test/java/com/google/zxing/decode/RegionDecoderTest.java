@@ -0,0 +1,61 @@
+package com.google.zxing.decode;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+/**
+ * @author hugo
+ *
+ */
+public class RegionDecoderTest {
+
+	private static final int WIDTH = 1600;
+
+	private static final int HEIGHT = 800;
+
+	@Test
+	public void regionsLearnTheirOwnScale() throws WriterException {
+		byte[] frame = new byte[WIDTH * HEIGHT];
+		Arrays.fill(frame, (byte) 230);
+		// 左半边一个大码，右半边一个小码
+		draw(frame, "large", 700, 50, 50);
+		draw(frame, "small", 110, 1150, 350);
+		RegionDecoder decoder = new RegionDecoder(
+				ScanRegion.parseList("left:0,0,0.5,1;right:0.5,0,1,1"),
+				DecodeFormats.buildHints(
+						Collections.singleton(BarcodeFormat.QR_CODE), null),
+				BinarizerType.HYBRID, false);
+		for (int i = 0; i < 12; i++) {
+			Map<String, Result> results = decoder.decode(frame, WIDTH, HEIGHT);
+			assertEquals("large", results.get("left").getText());
+			assertEquals("small", results.get("right").getText());
+		}
+		// 大码连续成功后缩小到4倍；小码缩小4倍后解不出来，退回2倍，不影响大码
+		assertEquals(4, decoder.getDecoder(0).getPreferredScale());
+		assertEquals(2, decoder.getDecoder(1).getPreferredScale());
+	}
+
+	private static void draw(byte[] frame, String contents, int size,
+			int left, int top) throws WriterException {
+		BitMatrix code = new QRCodeWriter().encode(contents,
+				BarcodeFormat.QR_CODE, size, size);
+		for (int y = 0; y < code.getHeight(); y++) {
+			for (int x = 0; x < code.getWidth(); x++) {
+				if (code.get(x, y)) {
+					frame[(top + y) * WIDTH + left + x] = 20;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.google.zxing.decode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+/**
+ * @author hugo
+ *
+ */
+public class ResultCacheTest {
+
+	private static final long HOUR = 60 * 60 * 1000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void fingerprintDependsOnWholeContent() {
+		byte[] a = new byte[100 * 1024];
+		byte[] b = a.clone();
+		// 只改最后一个字节，长度不变
+		b[b.length - 1] = 1;
+		assertEquals(ResultCache.fingerprint(a), ResultCache.fingerprint(a.clone()));
+		assertNotEquals(ResultCache.fingerprint(a), ResultCache.fingerprint(b));
+	}
+
+	@Test
+	public void fileKeyMatchesByteFingerprint() throws IOException {
+		byte[] data = "not really an image".getBytes("UTF-8");
+		File file = write(folder.newFile(), data);
+		ResultCache cache = new ResultCache(4, null, 0, HOUR);
+		assertEquals(ResultCache.fingerprint(data), cache.keyFor(file));
+	}
+
+	@Test
+	public void fileKeyChangesWhenRewrittenInPlace() throws IOException {
+		File file = write(folder.newFile(), new byte[] { 1, 2, 3 });
+		file.setLastModified(1000000L);
+		ResultCache cache = new ResultCache(4, null, 0, HOUR);
+		String before = cache.keyFor(file);
+
+		write(file, new byte[] { 1, 2, 4 });
+		file.setLastModified(2000000L);
+		assertNotEquals(before, cache.keyFor(file));
+	}
+
+	@Test
+	public void readBytesRegisterTheFileKey() throws IOException {
+		byte[] data = new byte[] { 5, 6, 7 };
+		File file = write(folder.newFile(), data);
+		ResultCache cache = new ResultCache(4, null, 0, HOUR);
+		assertNull(cache.knownKeyFor(file));
+		assertEquals(ResultCache.fingerprint(data), cache.keyFor(file, data));
+		assertEquals(ResultCache.fingerprint(data), cache.knownKeyFor(file));
+	}
+
+	@Test
+	public void memoryEntriesAreEvictedInLruOrder() {
+		ResultCache cache = new ResultCache(2, null, 0, HOUR);
+		cache.put("a", result("A"));
+		cache.put("b", result("B"));
+		cache.get("a");
+		cache.put("c", result("C"));
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+	}
+
+	@Test
+	public void negativeResultsExpire() {
+		ResultCache cache = new ResultCache(4, null, 0, -1);
+		cache.put("missing", null);
+		assertNull(cache.get("missing"));
+
+		cache = new ResultCache(4, null, 0, HOUR);
+		cache.put("missing", null);
+		ResultCache.Entry entry = cache.get("missing");
+		assertNotNull(entry);
+		assertFalse(entry.isFound());
+	}
+
+	@Test
+	public void diskEntriesSurviveANewInstance() throws IOException {
+		File directory = folder.newFolder();
+		new ResultCache(4, directory, 16, HOUR).put("key", result("hello"));
+
+		ResultCache.Entry entry = new ResultCache(4, directory, 16, HOUR)
+				.get("key");
+		assertNotNull(entry);
+		assertTrue(entry.isFound());
+		Result result = entry.getResult();
+		assertEquals("hello", result.getText());
+		assertEquals(BarcodeFormat.QR_CODE, result.getBarcodeFormat());
+		assertEquals(2, result.getResultPoints().length);
+		assertEquals(3f, result.getResultPoints()[1].getX(), 0f);
+	}
+
+	@Test
+	public void diskHitRefreshesModificationTime() throws IOException {
+		File directory = folder.newFolder();
+		new ResultCache(4, directory, 16, HOUR).put("key", result("hello"));
+		File file = directory.listFiles()[0];
+		file.setLastModified(1000000L);
+
+		assertNotNull(new ResultCache(4, directory, 16, HOUR).get("key"));
+		assertTrue(file.lastModified() > 1000000L);
+	}
+
+	@Test
+	public void diskIsTrimmedToMaxEntries() throws IOException {
+		File directory = folder.newFolder();
+		ResultCache cache = new ResultCache(4, directory, 16, HOUR);
+		for (int i = 0; i < 64; i++) {
+			cache.put("key" + i, result("text" + i));
+		}
+		// 每写入16条检查一次
+		assertTrue(directory.list().length <= 16);
+	}
+
+	private static Result result(String text) {
+		return new Result(text, null, new ResultPoint[] {
+				new ResultPoint(1, 2), new ResultPoint(3, 4) },
+				BarcodeFormat.QR_CODE);
+	}
+
+	private static File write(File file, byte[] data) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data);
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+}
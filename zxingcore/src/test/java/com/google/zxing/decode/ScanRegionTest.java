@@ -0,0 +1,77 @@
+package com.google.zxing.decode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author hugo
+ *
+ */
+public class ScanRegionTest {
+
+	@Test
+	public void parsesNamedRegions() {
+		List<ScanRegion> regions = ScanRegion
+				.parseList(" left:0,0,0.5,1 ; right : 0.5,0,1,1;");
+		assertEquals(2, regions.size());
+		assertEquals("left", regions.get(0).getName());
+		assertEquals("right", regions.get(1).getName());
+		assertArrayEquals(new int[] { 50, 0, 50, 200 }, regions.get(1).crop(
+				100, 200));
+	}
+
+	@Test
+	public void nameMayContainColons() {
+		List<ScanRegion> regions = ScanRegion.parseList("a:b:0,0,1,1");
+		assertEquals("a:b", regions.get(0).getName());
+	}
+
+	@Test
+	public void emptyInputGivesEmptyList() {
+		assertTrue(ScanRegion.parseList(null).isEmpty());
+		assertTrue(ScanRegion.parseList("  ").isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missingNameIsRejected() {
+		ScanRegion.parseList(":0,0,1,1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void wrongBoundCountIsRejected() {
+		ScanRegion.parseList("a:0,0,1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nonNumericBoundIsRejected() {
+		ScanRegion.parseList("a:0,0,x,1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void outOfRangeBoundIsRejected() {
+		ScanRegion.parseList("a:0,0,1.5,1");
+	}
+
+	@Test
+	public void cropIsAtLeastOnePixel() {
+		ScanRegion region = new ScanRegion("thin", 0.999f, 0, 1, 0.0001f);
+		int[] crop = region.crop(100, 100);
+		assertEquals(99, crop[0]);
+		assertEquals(1, crop[2]);
+		assertEquals(1, crop[3]);
+	}
+
+	@Test
+	public void gridCoversTheFrame() {
+		List<ScanRegion> regions = ScanRegion.grid(2, 3);
+		assertEquals(6, regions.size());
+		assertEquals("2-3", regions.get(5).getName());
+		assertArrayEquals(new int[] { 200, 150, 100, 150 }, regions.get(5)
+				.crop(300, 300));
+	}
+}
@@ -0,0 +1,70 @@
+package com.google.zxing.encode;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * @author hugo
+ *
+ */
+public class PackedBitMatrixTest {
+
+	@Test
+	public void packUnpackRoundTrip() {
+		// 宽度覆盖不足一个字节、正好整字节和跨多个字节的情况
+		for (int width : new int[] { 1, 7, 8, 9, 33, 95 }) {
+			BitMatrix matrix = random(width, 13, width);
+			PackedBitMatrix packed = PackedBitMatrix.pack(matrix);
+			assertEquals((width + 7) / 8, packed.getRowBytes());
+			assertEquals(matrix, packed.unpack());
+			for (int y = 0; y < matrix.getHeight(); y++) {
+				for (int x = 0; x < width; x++) {
+					assertEquals(matrix.get(x, y), packed.get(x, y));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void streamRoundTrip() throws IOException {
+		BitMatrix matrix = random(45, 45, 1);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PackedBitMatrix.pack(matrix).writeTo(new DataOutputStream(bytes));
+		PackedBitMatrix read = PackedBitMatrix.readFrom(new DataInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(matrix, read.unpack());
+	}
+
+	@Test(expected = IOException.class)
+	public void badSizeIsRejected() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0);
+		out.writeInt(10);
+		PackedBitMatrix.readFrom(new DataInputStream(new ByteArrayInputStream(
+				bytes.toByteArray())));
+	}
+
+	private static BitMatrix random(int width, int height, long seed) {
+		Random random = new Random(seed);
+		BitMatrix matrix = new BitMatrix(width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (random.nextBoolean()) {
+					matrix.set(x, y);
+				}
+			}
+		}
+		return matrix;
+	}
+}
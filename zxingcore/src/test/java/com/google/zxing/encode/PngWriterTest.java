@@ -0,0 +1,105 @@
+package com.google.zxing.encode;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * 写出的PNG用ImageIO读回，检查像素并解码
+ *
+ * @author hugo
+ *
+ */
+public class PngWriterTest {
+
+	@Test
+	public void qrCodeRoundTrip() throws Exception {
+		// 21 + 2 * 2 = 25个模块，乘以3后宽度75不是8的整数倍
+		BitMatrix modules = encode("png writer", BarcodeFormat.QR_CODE, 2);
+		assertEquals(25, modules.getWidth());
+		BufferedImage image = write(modules, 3, PngWriter.DEFAULT_BAR_HEIGHT);
+		assertEquals(75, image.getWidth());
+		assertEquals(75, image.getHeight());
+		assertPixels(modules, 3, 3, image);
+		assertEquals("png writer", decode(image));
+	}
+
+	@Test
+	public void oneDCodeRepeatsToBarHeight() throws Exception {
+		BitMatrix modules = encode("123456789012", BarcodeFormat.CODE_128, 10);
+		assertEquals(1, modules.getHeight());
+		BufferedImage image = write(modules, 2, 30);
+		assertEquals(modules.getWidth() * 2, image.getWidth());
+		assertEquals(60, image.getHeight());
+		assertPixels(modules, 2, 60, image);
+		assertEquals("123456789012", decode(image));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroScaleIsRejected() throws IOException {
+		PngWriter.write(PackedBitMatrix.pack(new BitMatrix(3, 3)), 0,
+				new ByteArrayOutputStream());
+	}
+
+	private static BitMatrix encode(String contents, BarcodeFormat format,
+			int margin) throws WriterException {
+		Map<EncodeHintType, Object> hints = new EnumMap<EncodeHintType, Object>(
+				EncodeHintType.class);
+		hints.put(EncodeHintType.MARGIN, margin);
+		return new MultiFormatWriter().encode(contents, format, 0, 0, hints);
+	}
+
+	private static BufferedImage write(BitMatrix modules, int scale,
+			int barHeight) throws IOException {
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		PngWriter.write(PackedBitMatrix.pack(modules), scale, barHeight, png);
+		return ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+	}
+
+	private static void assertPixels(BitMatrix modules, int scaleX,
+			int scaleY, BufferedImage image) {
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				boolean dark = (image.getRGB(x, y) & 0xff) < 128;
+				assertEquals(x + "," + y, modules.get(x / scaleX, y / scaleY),
+						dark);
+			}
+		}
+	}
+
+	private static String decode(BufferedImage image) throws ReaderException {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		byte[] luminances = new byte[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				luminances[y * width + x] = (byte) image.getRGB(x, y);
+			}
+		}
+		return new MultiFormatReader().decode(
+				new BinaryBitmap(new HybridBinarizer(
+						new PlanarYUVLuminanceSource(luminances, width,
+								height, 0, 0, width, height, false))))
+				.getText();
+	}
+}
@@ -0,0 +1,63 @@
+package com.google.zxing.encode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * @author hugo
+ *
+ */
+public class SvgWriterTest {
+
+	/**
+	 * 第0行：XX.X；第1行：空；第2行：.XXX
+	 */
+	private static PackedBitMatrix knownMatrix() {
+		BitMatrix matrix = new BitMatrix(4, 3);
+		matrix.set(0, 0);
+		matrix.set(1, 0);
+		matrix.set(3, 0);
+		matrix.setRegion(1, 2, 3, 1);
+		return PackedBitMatrix.pack(matrix);
+	}
+
+	@Test
+	public void oneSubpathPerRun() throws IOException {
+		StringWriter path = new StringWriter();
+		SvgWriter.writePathData(knownMatrix(), path);
+		assertEquals("M0 0h2v1h-2zM3 0h1v1h-1zM1 2h3v1h-3z", path.toString());
+	}
+
+	@Test
+	public void emptyMatrixHasEmptyPath() throws IOException {
+		StringWriter path = new StringWriter();
+		SvgWriter.writePathData(PackedBitMatrix.pack(new BitMatrix(5, 5)),
+				path);
+		assertEquals("", path.toString());
+	}
+
+	@Test
+	public void documentUsesModuleCoordinates() {
+		String svg = SvgWriter.toSvg(knownMatrix(), 10);
+		assertTrue(svg, svg.contains("width=\"40\" height=\"30\""));
+		assertTrue(svg, svg.contains("viewBox=\"0 0 4 3\""));
+		assertEquals(3, count(svg, 'M'));
+	}
+
+	private static int count(String text, char c) {
+		int count = 0;
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) == c) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
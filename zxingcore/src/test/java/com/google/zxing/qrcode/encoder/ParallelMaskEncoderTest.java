@@ -0,0 +1,86 @@
+package com.google.zxing.qrcode.encoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.encode.EncodeHints;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+/**
+ * 并行选择掩码的结果必须与原版Encoder逐模块一致
+ *
+ * @author hugo
+ *
+ */
+public class ParallelMaskEncoderTest {
+
+	@Test
+	public void matchesStockEncoderAcrossVersions() throws WriterException {
+		Random random = new Random(42);
+		for (ErrorCorrectionLevel ecLevel : ErrorCorrectionLevel.values()) {
+			Map<EncodeHintType, Object> hints = EncodeHints.build(
+					BarcodeFormat.QR_CODE, ecLevel, EncodeHints.DEFAULT_MARGIN,
+					"UTF-8");
+			// 覆盖串行（版本较小）和并行两条路径
+			for (int length : new int[] { 1, 20, 150, 400, 1200 }) {
+				String content = randomText(random, length);
+				assertSame(Encoder.encode(content, ecLevel, hints),
+						ParallelMaskEncoder.encode(content, ecLevel, hints));
+			}
+		}
+	}
+
+	@Test
+	public void matchesStockEncoderForOtherModes() throws WriterException {
+		Map<EncodeHintType, Object> hints = EncodeHints.build(
+				BarcodeFormat.QR_CODE, ErrorCorrectionLevel.M,
+				EncodeHints.DEFAULT_MARGIN, "UTF-8");
+		String[] contents = { "0123456789012345678901234567890123456789",
+				"HELLO WORLD $%*+-./:", "中文内容，按UTF-8字节模式编码" };
+		for (String content : contents) {
+			assertSame(Encoder.encode(content, ErrorCorrectionLevel.M, hints),
+					ParallelMaskEncoder.encode(content,
+							ErrorCorrectionLevel.M, hints));
+		}
+	}
+
+	@Test
+	public void bitMatrixMatchesQRCodeWriter() throws WriterException {
+		Map<EncodeHintType, Object> hints = EncodeHints.build(
+				BarcodeFormat.QR_CODE, ErrorCorrectionLevel.Q, 2, "UTF-8");
+		String content = randomText(new Random(7), 300);
+		BitMatrix expected = new QRCodeWriter().encode(content,
+				BarcodeFormat.QR_CODE, 0, 0, hints);
+		assertEquals(expected, ParallelMaskEncoder.encode(content, 0, 0, hints));
+	}
+
+	private static void assertSame(QRCode expected, QRCode actual) {
+		assertEquals(expected.getVersion(), actual.getVersion());
+		assertEquals(expected.getMode(), actual.getMode());
+		assertEquals(expected.getMaskPattern(), actual.getMaskPattern());
+		byte[][] expectedModules = expected.getMatrix().getArray();
+		byte[][] actualModules = actual.getMatrix().getArray();
+		assertEquals(expectedModules.length, actualModules.length);
+		for (int y = 0; y < expectedModules.length; y++) {
+			assertArrayEquals(expectedModules[y], actualModules[y]);
+		}
+	}
+
+	private static String randomText(Random random, int length) {
+		StringBuilder text = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			text.append((char) ('a' + random.nextInt(26)));
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,18 @@
+package com.google.zxing.activity;
+
+import com.google.zxing.decode.PreparedResult;
+
+/**
+ * 连续扫描模式下每扫到一个新条码回调一次，在主线程中调用。重复的条码已被过滤
+ *
+ * @author hugo
+ *
+ */
+public interface BulkScanListener {
+
+    /**
+     * @param result 新扫到的条码
+     * @param count  本次扫描至今扫到的条码数（含这一个）
+     */
+    void onBulkScanResult(PreparedResult result, int count);
+}
@@ -4,11 +4,13 @@ import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.ProgressDialog;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.preference.PreferenceManager;
 import android.provider.MediaStore;
 import android.util.Log;
 import android.view.KeyEvent;
@@ -24,21 +26,29 @@ import com.google.zxing.DecodeHintType;
 import com.google.zxing.R;
 import com.google.zxing.Result;
 import com.google.zxing.camera.CameraManager;
-import com.google.zxing.client.result.ResultParser;
 import com.google.zxing.common.AmbientLightManager;
 import com.google.zxing.common.BeepManager;
-import com.google.zxing.common.BitmapUtils;
 import com.google.zxing.common.InactivityTimer;
 import com.google.zxing.common.IntentSource;
-import com.google.zxing.decode.BitmapDecoder;
+import com.google.zxing.config.Config;
+import com.google.zxing.decode.BitmapDecodeService;
 import com.google.zxing.decode.CaptureActivityHandler;
+import com.google.zxing.decode.DuplicateFilter;
 import com.google.zxing.decode.FinishListener;
+import com.google.zxing.decode.Intents;
+import com.google.zxing.decode.PreparedResult;
+import com.google.zxing.decode.ResultBatch;
+import com.google.zxing.decode.ScanRegion;
 import com.google.zxing.view.ViewfinderView;
 
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 
 /**
@@ -64,6 +74,20 @@ public final class CaptureActivity extends Activity implements
     private static final int PARSE_BARCODE_SUC = 200;
     public static final String SCAN_QRCODE_RESULT = "qrcode_result";//扫码返回结果（字符串）
     public static final String SCAN_QRCODE_BITMAP = "qrcode_bitmap";//扫码结果bitmap
+    public static final String SCAN_QRCODE_RESULTS = "qrcode_results";//连续扫描或一帧多码的全部结果（ArrayList<String>）
+    public static final String SCAN_QRCODE_REGIONS = "qrcode_regions";//多区域扫描时各结果所在的区域名（ArrayList<String>），与SCAN_QRCODE_RESULTS一一对应
+
+    /**
+     * 连续扫描时未设置窗口的默认重复判定时间
+     */
+    private static final long DEFAULT_DUPLICATE_WINDOW = 3000L;
+
+    /**
+     * 连续扫描时记住的条码数
+     */
+    private static final int MAX_REMEMBERED_CODES = 1024;
+
+    private static BulkScanListener bulkScanListener;
 
     /**
      * 是否有预览
@@ -121,7 +145,7 @@ public final class CaptureActivity extends Activity implements
      */
     private String characterSet;
 
-    private Result savedResultToShow;
+    private PreparedResult savedResultToShow;
 
     private IntentSource source;
 
@@ -130,6 +154,36 @@ public final class CaptureActivity extends Activity implements
      */
     private String photoPath;
 
+    /**
+     * 正在进行的图片识别，界面销毁时取消
+     */
+    private Future<Result> photoDecode;
+
+    /**
+     * 连续扫描模式：扫到结果后不退出，继续扫描
+     */
+    private boolean bulkMode;
+
+    /**
+     * 一帧多码模式：一次解出画面中的所有条码
+     */
+    private boolean multiMode;
+
+    /**
+     * 由{@link Intents.Scan#REGIONS}指定的多个扫描区域，未指定时为空
+     */
+    private List<ScanRegion> scanRegions;
+
+    /**
+     * 连续扫描的重复过滤，在暂停后恢复时保留
+     */
+    private DuplicateFilter duplicateFilter;
+
+    /**
+     * 连续扫描至今的结果，退出时返回
+     */
+    private final ArrayList<String> bulkResults = new ArrayList<String>();
+
     private Handler mHandler = new MyHandler(this);
 
     static class MyHandler extends Handler {
@@ -179,6 +233,22 @@ public final class CaptureActivity extends Activity implements
         beepManager = new BeepManager(this);
         ambientLightManager = new AmbientLightManager(this);
 
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        bulkMode = getIntent().getBooleanExtra(Intents.Scan.BULK_MODE,
+                prefs.getBoolean(Config.KEY_BULK_MODE, false));
+        multiMode = getIntent().getBooleanExtra(Intents.Scan.MULTIPLE,
+                prefs.getBoolean(Config.KEY_DECODE_MULTIPLE, false));
+        try {
+            scanRegions = ScanRegion.parseList(getIntent().getStringExtra(Intents.Scan.REGIONS));
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Ignoring scan regions", e);
+            scanRegions = Collections.emptyList();
+        }
+        if (bulkMode) {
+            duplicateFilter = new DuplicateFilter(MAX_REMEMBERED_CODES,
+                    readDuplicateWindow(prefs));
+        }
+
         // 监听图片识别按钮
         findViewById(R.id.capture_scan_photo).setOnClickListener(this);
 
@@ -202,6 +272,7 @@ public final class CaptureActivity extends Activity implements
         // 不建议放到onCreate中，因为如果在onCreate中加上首次启动展示帮助信息的代码的 话，
         // 会导致扫描窗口的尺寸计算有误的bug
         cameraManager = new CameraManager(getApplication());
+        cameraManager.setScanRegions(scanRegions);
 
         viewfinderView = (ViewfinderView) findViewById(R.id.capture_viewfinder_view);
         viewfinderView.setCameraManager(cameraManager);
@@ -246,15 +317,15 @@ public final class CaptureActivity extends Activity implements
     @Override
     protected void onPause() {
         if (handler != null) {
-            handler.quitSynchronously();
+            handler.quit();
             handler = null;
         }
         inactivityTimer.onPause();
         ambientLightManager.stop();
         beepManager.close();
 
-        // 关闭摄像头
-        cameraManager.closeDriver();
+        // 关闭摄像头，在相机线程中释放，不阻塞UI线程
+        cameraManager.closeDriverAsync();
         if (!hasSurface) {
             SurfaceView surfaceView = (SurfaceView) findViewById(R.id.capture_preview_view);
             SurfaceHolder surfaceHolder = surfaceView.getHolder();
@@ -265,6 +336,10 @@ public final class CaptureActivity extends Activity implements
 
     @Override
     protected void onDestroy() {
+        if (photoDecode != null) {
+            photoDecode.cancel(true);
+            photoDecode = null;
+        }
         inactivityTimer.shutdown();
         super.onDestroy();
     }
@@ -273,6 +348,11 @@ public final class CaptureActivity extends Activity implements
     public boolean onKeyDown(int keyCode, KeyEvent event) {
         switch (keyCode) {
             case KeyEvent.KEYCODE_BACK:
+                if (bulkMode) { // 结束连续扫描，返回全部结果
+                    setBulkScanResults();
+                    finish();
+                    return true;
+                }
                 if ((source == IntentSource.NONE) && lastResult != null) { // 重新进行扫描
                     restartPreviewAfterDelay(0L);
                     return true;
@@ -320,38 +400,27 @@ public final class CaptureActivity extends Activity implements
                         progressDialog.setCancelable(false);
                         progressDialog.show();
 
-                        new Thread(new Runnable() {
-
-                            @Override
-                            public void run() {
-
-                                Bitmap img = BitmapUtils
-                                        .getCompressedBitmap(photoPath);
-
-                                BitmapDecoder decoder = new BitmapDecoder(
-                                        CaptureActivity.this);
-                                Result result = decoder.getRawResult(img);
-
-
-                                if (result != null) {
-                                    Message m = mHandler.obtainMessage();
-                                    m.what = PARSE_BARCODE_SUC;
-                                    String resultStr = ResultParser.parseResult(result)
-                                            .toString();
-                                    m.obj = resultStr;
-                                    setCaptureResult(resultStr);
-                                    mHandler.sendMessage(m);
-                                } else {
-                                    Message m = mHandler.obtainMessage();
-                                    m.what = PARSE_BARCODE_FAIL;
-                                    mHandler.sendMessage(m);
-                                }
-
-                                progressDialog.dismiss();
-
-                            }
-                        }).start();
-                        cursor.close();
+                        // 由粗到细渐进解码，解码器在多次识别之间复用
+                        photoDecode = BitmapDecodeService.getInstance(this).decode(
+                                photoPath, new BitmapDecodeService.Callback() {
+
+                                    @Override
+                                    public void onDecodeSucceeded(PreparedResult result) {
+                                        progressDialog.dismiss();
+                                        String resultStr = result.getDisplayText();
+                                        Message m = mHandler.obtainMessage();
+                                        m.what = PARSE_BARCODE_SUC;
+                                        m.obj = resultStr;
+                                        mHandler.sendMessage(m);
+                                        setCaptureResult(resultStr);
+                                    }
+
+                                    @Override
+                                    public void onDecodeFailed() {
+                                        progressDialog.dismiss();
+                                        mHandler.sendEmptyMessage(PARSE_BARCODE_FAIL);
+                                    }
+                                });
                     }
 
                     break;
@@ -388,33 +457,134 @@ public final class CaptureActivity extends Activity implements
      * A valid barcode has been found, so give an indication of success and show
      * the results.
      *
-     * @param rawResult   The contents of the barcode.
-     * @param scaleFactor amount by which thumbnail was scaled
-     * @param barcode     A greyscale bitmap of the camera data which was decoded.
+     * @param result 已在结果处理线程中解析好的结果，包括解码画面的缩略图
      */
-    public void handleDecode(Result rawResult, Bitmap barcode, float scaleFactor) {
+    public void handleDecode(PreparedResult result) {
 
         // 重新计时
         inactivityTimer.onActivity();
 
-        lastResult = rawResult;
+        if (bulkMode) {
+            // 解码线程已继续扫描下一帧，这里只提示并通知
+            beepManager.playBeepSoundAndVibrate();
+            bulkResults.add(result.getDisplayText());
+            BulkScanListener listener = bulkScanListener;
+            if (listener != null) {
+                listener.onBulkScanResult(result, bulkResults.size());
+            }
+            return;
+        }
+
+        lastResult = result.getRawResult();
 
         // 把图片画到扫描框
-//        viewfinderView.drawResultBitmap(barcode);
+//        viewfinderView.drawResultBitmap(result.getThumbnail());
 
         beepManager.playBeepSoundAndVibrate();
 
 //        Toast.makeText(this,
-//                "识别结果:" + ResultParser.parseResult(rawResult).toString(),
+//                "识别结果:" + result.getDisplayText(),
 //                Toast.LENGTH_SHORT).show();
-        String result = ResultParser.parseResult(rawResult).toString();
         Intent data = new Intent();
-        data.putExtra(SCAN_QRCODE_RESULT, result);
-        data.putExtra(SCAN_QRCODE_BITMAP, barcode);
+        data.putExtra(SCAN_QRCODE_RESULT, result.getDisplayText());
+        data.putExtra(SCAN_QRCODE_BITMAP, result.getThumbnail());
         setResult(0, data);
         finish();
     }
 
+    /**
+     * 一帧多码模式下同一帧找到的全部结果
+     *
+     * @param batch 已在结果处理线程中解析好的结果，共用一张缩略图
+     */
+    public void handleDecodeBatch(ResultBatch batch) {
+
+        inactivityTimer.onActivity();
+        beepManager.playBeepSoundAndVibrate();
+
+        List<PreparedResult> results = batch.getResults();
+        if (bulkMode) {
+            BulkScanListener listener = bulkScanListener;
+            for (PreparedResult result : results) {
+                bulkResults.add(result.getDisplayText());
+                if (listener != null) {
+                    listener.onBulkScanResult(result, bulkResults.size());
+                }
+            }
+            return;
+        }
+
+        lastResult = results.get(0).getRawResult();
+
+        ArrayList<String> texts = new ArrayList<String>(results.size());
+        ArrayList<String> regions = new ArrayList<String>(results.size());
+        for (PreparedResult result : results) {
+            texts.add(result.getDisplayText());
+            regions.add(result.getRegion());
+        }
+        Intent data = new Intent();
+        data.putStringArrayListExtra(SCAN_QRCODE_RESULTS, texts);
+        if (results.get(0).getRegion() != null) {
+            data.putStringArrayListExtra(SCAN_QRCODE_REGIONS, regions);
+        }
+        data.putExtra(SCAN_QRCODE_RESULT, texts.get(0));
+        data.putExtra(SCAN_QRCODE_BITMAP, batch.getThumbnail());
+        setResult(0, data);
+        finish();
+    }
+
+    /**
+     * 设置连续扫描的回调，不再需要时设为null，以免持有调用方
+     */
+    public static void setBulkScanListener(BulkScanListener listener) {
+        bulkScanListener = listener;
+    }
+
+    /**
+     * 是否为连续扫描模式，由{@link Intents.Scan#BULK_MODE}或{@link Config#KEY_BULK_MODE}决定
+     */
+    public boolean isBulkMode() {
+        return bulkMode;
+    }
+
+    /**
+     * 是否为一帧多码模式，由{@link Intents.Scan#MULTIPLE}或{@link Config#KEY_DECODE_MULTIPLE}决定
+     */
+    public boolean isMultiMode() {
+        return multiMode;
+    }
+
+    /**
+     * @return 连续扫描的重复过滤，非连续扫描时为null
+     */
+    public DuplicateFilter getDuplicateFilter() {
+        return duplicateFilter;
+    }
+
+    /**
+     * 记住重复时同一条码在整个扫描过程中只报告一次，否则只在时间窗口内过滤
+     */
+    private static long readDuplicateWindow(SharedPreferences prefs) {
+        if (prefs.getBoolean(Config.KEY_REMEMBER_DUPLICATES, false)) {
+            return DuplicateFilter.FOREVER;
+        }
+        try {
+            return Long.parseLong(prefs.getString(Config.KEY_DUPLICATE_WINDOW,
+                    String.valueOf(DEFAULT_DUPLICATE_WINDOW)));
+        } catch (NumberFormatException e) {
+            return DEFAULT_DUPLICATE_WINDOW;
+        }
+    }
+
+    private void setBulkScanResults() {
+        Intent data = new Intent();
+        data.putStringArrayListExtra(SCAN_QRCODE_RESULTS, bulkResults);
+        if (!bulkResults.isEmpty()) {
+            data.putExtra(SCAN_QRCODE_RESULT, bulkResults.get(bulkResults.size() - 1));
+        }
+        setResult(0, data);
+    }
+
     public void restartPreviewAfterDelay(long delayMS) {
         if (handler != null) {
             handler.sendEmptyMessageDelayed(R.id.restart_preview, delayMS);
@@ -479,7 +649,7 @@ public final class CaptureActivity extends Activity implements
      * @param bitmap
      * @param result
      */
-    private void decodeOrStoreSavedBitmap(Bitmap bitmap, Result result) {
+    private void decodeOrStoreSavedBitmap(Bitmap bitmap, PreparedResult result) {
         // Bitmap isn't used yet -- will be used soon
         if (handler == null) {
             savedResultToShow = result;
@@ -489,7 +659,8 @@ public final class CaptureActivity extends Activity implements
             }
             if (savedResultToShow != null) {
                 Message message = Message.obtain(handler,
-                        R.id.decode_succeeded, savedResultToShow);
+                        R.id.decode_succeeded, handler.getGeneration(), 0,
+                        savedResultToShow);
                 handler.sendMessage(message);
             }
             savedResultToShow = null;
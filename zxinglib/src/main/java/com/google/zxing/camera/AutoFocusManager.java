@@ -101,6 +101,25 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
 		active = false;
 	}
 
+	/**
+	 * 暂停自动对焦执行action（如修改相机参数），之后恢复；期间其他线程不能启动或停止对焦，
+	 * 已经停止的不会被重新启动
+	 */
+	synchronized void runPaused(java.lang.Runnable action) {
+		boolean wasActive = active;
+		if (wasActive) {
+			stop();
+		}
+		try {
+			action.run();
+		}
+		finally {
+			if (wasActive) {
+				start();
+			}
+		}
+	}
+
 	private final class AutoFocusTask extends AsyncTask<Object, Object, Object> {
 		@Override
 		protected Object doInBackground(Object... voids) {
@@ -17,16 +17,24 @@
 package com.google.zxing.camera;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import android.content.Context;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.hardware.Camera;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
 import android.view.SurfaceHolder;
 
 import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.decode.AutoZoomController;
+import com.google.zxing.decode.ScanRegion;
 
 /**
  * This object wraps the Camera service object and expects to be the only one
@@ -46,6 +54,23 @@ public final class CameraManager {
 
 	private static final int MAX_FRAME_WIDTH = 1200; // = 5/8 * 1920
 
+	/**
+	 * 等待上一次异步释放相机的最长时间
+	 */
+	private static final long RELEASE_WAIT_MS = 1000L;
+
+	/**
+	 * 相机线程，负责异步停止预览并释放相机，所有实例共用，保证释放操作按顺序执行
+	 */
+	private static HandlerThread cameraThread;
+
+	private static Handler cameraHandler;
+
+	/**
+	 * 最近一次异步释放任务完成的信号，下次打开相机前需等待其完成
+	 */
+	private static CountDownLatch pendingRelease;
+
 	private final Context context;
 
 	private final CameraConfigurationManager configManager;
@@ -66,6 +91,16 @@ public final class CameraManager {
 
 	private int requestedFramingRectHeight;
 
+	/**
+	 * 多区域扫描时的各个区域，为空时只解码扫描框
+	 */
+	private List<ScanRegion> scanRegions = Collections.emptyList();
+
+	/**
+	 * 手动变焦时通知，没有开启自动变焦时为null
+	 */
+	private volatile AutoZoomController autoZoom;
+
 	/**
 	 * Preview frames are delivered here, which we pass on to the registered
 	 * handler. Make sure to clear the handler so it will only receive one
@@ -92,6 +127,8 @@ public final class CameraManager {
 			throws IOException {
 		Camera theCamera = camera;
 		if (theCamera == null) {
+			awaitPendingRelease();
+
 			// 获取手机背面的摄像头
 			theCamera = OpenCameraInterface.open();
 			if (theCamera == null) {
@@ -165,6 +202,81 @@ public final class CameraManager {
 		}
 	}
 
+	/**
+	 * Like {@link #closeDriver()}, but stops the preview and releases the
+	 * camera on the camera thread so the caller (usually onPause on the UI
+	 * thread) returns immediately. Preview callbacks are detached right away,
+	 * so no further frames are delivered after this call.
+	 */
+	public synchronized void closeDriverAsync() {
+		if (autoFocusManager != null) {
+			autoFocusManager.stop();
+			autoFocusManager = null;
+		}
+		previewCallback.setHandler(null, 0);
+		previewing = false;
+
+		final Camera theCamera = camera;
+		if (theCamera == null) {
+			return;
+		}
+		camera = null;
+		framingRect = null;
+		framingRectInPreview = null;
+
+		final CountDownLatch released = new CountDownLatch(1);
+		synchronized (CameraManager.class) {
+			pendingRelease = released;
+		}
+		getCameraHandler().post(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					theCamera.setOneShotPreviewCallback(null);
+					theCamera.stopPreview();
+					theCamera.release();
+				}
+				catch (RuntimeException re) {
+					Log.w(TAG, "Unexpected error releasing camera", re);
+				}
+				finally {
+					released.countDown();
+				}
+			}
+		});
+	}
+
+	private static synchronized Handler getCameraHandler() {
+		if (cameraThread == null) {
+			cameraThread = new HandlerThread("CameraThread");
+			cameraThread.start();
+			cameraHandler = new Handler(cameraThread.getLooper());
+		}
+		return cameraHandler;
+	}
+
+	/**
+	 * 如果上一个实例仍在相机线程中释放相机，等待其完成后再打开，否则Camera.open会失败
+	 */
+	private static void awaitPendingRelease() {
+		CountDownLatch released;
+		synchronized (CameraManager.class) {
+			released = pendingRelease;
+			pendingRelease = null;
+		}
+		if (released == null) {
+			return;
+		}
+		try {
+			if (!released.await(RELEASE_WAIT_MS, TimeUnit.MILLISECONDS)) {
+				Log.w(TAG, "Timed out waiting for previous camera release");
+			}
+		}
+		catch (InterruptedException e) {
+			// continue
+		}
+	}
+
 	/**
 	 * Asks the camera hardware to begin drawing preview frames to the screen.
 	 */
@@ -201,18 +313,28 @@ public final class CameraManager {
 	 * Convenience method for
 	 * {@link org.madmatrix.zxing.android.CaptureActivity}
 	 */
-	public synchronized void setTorch(boolean newSetting) {
-		if (newSetting != configManager.getTorchState(camera)) {
-			if (camera != null) {
-				if (autoFocusManager != null) {
-					autoFocusManager.stop();
+	public synchronized void setTorch(final boolean newSetting) {
+		final AutoFocusManager focus = autoFocusManager;
+		changeParameters(new ParameterChange() {
+			@Override
+			public void apply(final Camera theCamera) {
+				if (newSetting == configManager.getTorchState(theCamera)) {
+					return;
 				}
-				configManager.setTorch(camera, newSetting);
-				if (autoFocusManager != null) {
-					autoFocusManager.start();
+				Runnable setTorch = new Runnable() {
+					@Override
+					public void run() {
+						configManager.setTorch(theCamera, newSetting);
+					}
+				};
+				if (focus != null) {
+					focus.runPaused(setTorch);
+				}
+				else {
+					setTorch.run();
 				}
 			}
-		}
+		});
 	}
 
 	/**
@@ -359,6 +481,26 @@ public final class CameraManager {
 		}
 	}
 
+	/**
+	 * 设置本次扫描的多个区域，各区域从同一帧中分别裁出并行解码，结果带上区域名。可以在扫描过程中随时修改
+	 *
+	 * @param regions
+	 *            位置相对于旋转成竖屏后的整个预览画面；为null或空时恢复为只解码扫描框
+	 */
+	public synchronized void setScanRegions(List<ScanRegion> regions) {
+		scanRegions = regions == null || regions.isEmpty() ? Collections
+				.<ScanRegion> emptyList() : Collections
+				.unmodifiableList(new ArrayList<ScanRegion>(regions));
+		Log.d(TAG, "Scan regions: " + scanRegions);
+	}
+
+	/**
+	 * @return 不可修改，区域不变时返回同一个对象；未设置时为空列表
+	 */
+	public synchronized List<ScanRegion> getScanRegions() {
+		return scanRegions;
+	}
+
 	/**
 	 * A factory method to build the appropriate LuminanceSource object based on
 	 * the format of the preview buffers, as described by Camera.Parameters.
@@ -386,34 +528,37 @@ public final class CameraManager {
 	 * 焦点放小
 	 */
 	public void zoomOut() {
-		if (camera != null && camera.getParameters().isZoomSupported()) {
-
-			Camera.Parameters parameters = camera.getParameters();
-			if (parameters.getZoom() <= 0) {
-				return;
+		changeParameters(new ParameterChange() {
+			@Override
+			public void apply(Camera theCamera) {
+				Camera.Parameters parameters = theCamera.getParameters();
+				if (!parameters.isZoomSupported() || parameters.getZoom() <= 0) {
+					return;
+				}
+				parameters.setZoom(parameters.getZoom() - 1);
+				theCamera.setParameters(parameters);
+				onManualZoom(parameters.getZoom());
 			}
-
-			parameters.setZoom(parameters.getZoom() - 1);
-			camera.setParameters(parameters);
-
-		}
+		});
 	}
 
 	/**
 	 * 焦点放大
 	 */
 	public void zoomIn() {
-		if (camera != null && camera.getParameters().isZoomSupported()) {
-
-			Camera.Parameters parameters = camera.getParameters();
-			if (parameters.getZoom() >= parameters.getMaxZoom()) {
-				return;
+		changeParameters(new ParameterChange() {
+			@Override
+			public void apply(Camera theCamera) {
+				Camera.Parameters parameters = theCamera.getParameters();
+				if (!parameters.isZoomSupported()
+						|| parameters.getZoom() >= parameters.getMaxZoom()) {
+					return;
+				}
+				parameters.setZoom(parameters.getZoom() + 1);
+				theCamera.setParameters(parameters);
+				onManualZoom(parameters.getZoom());
 			}
-
-			parameters.setZoom(parameters.getZoom() + 1);
-			camera.setParameters(parameters);
-
-		}
+		});
 	}
 
 	/*
@@ -421,15 +566,112 @@ public final class CameraManager {
 	 * 
 	 * @param scale
 	 */
-	public void setCameraZoom(int scale) {
-		if (camera != null && camera.getParameters().isZoomSupported()
-				&& scale <= camera.getParameters().getMaxZoom() && scale >= 0) {
+	public void setCameraZoom(final int scale) {
+		changeParameters(new ParameterChange() {
+			@Override
+			public void apply(Camera theCamera) {
+				Camera.Parameters parameters = theCamera.getParameters();
+				if (!parameters.isZoomSupported() || scale < 0
+						|| scale > parameters.getMaxZoom()) {
+					return;
+				}
+				parameters.setZoom(scale);
+				theCamera.setParameters(parameters);
+				onManualZoom(scale);
+			}
+		});
+	}
+
+	/**
+	 * @return 各变焦级别的放大倍数（百分数），下标即变焦级别；相机未打开或不支持变焦时为null
+	 */
+	public synchronized int[] getZoomRatios() {
+		if (camera == null) {
+			return null;
+		}
+		Camera.Parameters parameters = camera.getParameters();
+		List<Integer> ratios = parameters.isZoomSupported() ? parameters
+				.getZoomRatios() : null;
+		if (ratios == null || ratios.isEmpty()) {
+			return null;
+		}
+		int[] result = new int[ratios.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ratios.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * @return 相机当前的变焦级别，相机未打开或不支持变焦时为0
+	 */
+	public synchronized int getZoom() {
+		if (camera == null) {
+			return 0;
+		}
+		Camera.Parameters parameters = camera.getParameters();
+		return parameters.isZoomSupported() ? parameters.getZoom() : 0;
+	}
 
-			Camera.Parameters parameters = camera.getParameters();
+	/**
+	 * @param autoZoom
+	 *            手动变焦时通知的自动变焦控制器，可以为null
+	 */
+	public void setAutoZoom(AutoZoomController autoZoom) {
+		this.autoZoom = autoZoom;
+	}
 
-			parameters.setZoom(scale);
-			camera.setParameters(parameters);
+	private void onManualZoom(int zoom) {
+		AutoZoomController controller = autoZoom;
+		if (controller != null) {
+			controller.onManualZoom(zoom);
+		}
+	}
 
+	/**
+	 * 在相机线程中设置变焦级别，立即返回，不阻塞解码线程
+	 */
+	public void setZoomAsync(final int zoom) {
+		changeParameters(new ParameterChange() {
+			@Override
+			public void apply(Camera theCamera) {
+				Camera.Parameters parameters = theCamera.getParameters();
+				if (parameters.isZoomSupported()
+						&& zoom <= parameters.getMaxZoom()) {
+					parameters.setZoom(zoom);
+					theCamera.setParameters(parameters);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 在相机线程中对当前打开的相机读取、修改并写回参数
+	 */
+	private interface ParameterChange {
+		void apply(Camera theCamera);
+	}
+
+	/**
+	 * 所有参数修改（变焦、闪光灯）都交给相机线程依次执行，UI线程和解码线程的修改不会互相覆盖；
+	 * 相机未打开时忽略
+	 */
+	private synchronized void changeParameters(final ParameterChange change) {
+		final Camera theCamera = camera;
+		if (theCamera == null) {
+			return;
 		}
+		getCameraHandler().post(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					change.apply(theCamera);
+				}
+				catch (RuntimeException re) {
+					// 相机可能已在相机线程中释放
+					Log.w(TAG, "Unable to change camera parameters", re);
+				}
+			}
+		});
 	}
 }
@@ -0,0 +1,311 @@
+package com.google.zxing.common;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.os.Build;
+
+/**
+ * 解码图片用的Bitmap池。取完亮度后的bitmap放回池中，下次解码通过inBitmap复用其内存，
+ * 连续解码大量图片时不再频繁分配大对象。按内存大小分桶（2的幂）存放，总大小有上限，
+ * 超出时先回收最大的。
+ * <p>
+ * inBitmap需要API 11；API 19之前只能复用宽高和配置完全相同、且inSampleSize为1的bitmap，
+ * 之后只要内存足够即可。BitmapRegionDecoder从API 16起支持inBitmap。更低版本直接分配新的bitmap。
+ * <p>
+ * 池不会自己清空：批量解码结束或解码服务空闲时调用{@link #clear()}，
+ * 通过{@link #registerMemoryCallbacks(Context)}在系统内存紧张时自动清空
+ *
+ * @author hugo
+ *
+ */
+@SuppressLint("NewApi")
+public final class BitmapPool {
+
+	/**
+	 * 池中bitmap的总大小上限
+	 */
+	private static final int MAX_POOL_BYTES = 16 * 1024 * 1024;
+
+	private static final BitmapPool INSTANCE = new BitmapPool(MAX_POOL_BYTES);
+
+	private final int maxBytes;
+
+	private int currentBytes;
+
+	private boolean callbacksRegistered;
+
+	/**
+	 * 以内存大小向上取整到2的幂为键
+	 */
+	private final TreeMap<Integer, ArrayDeque<Bitmap>> buckets = new TreeMap<Integer, ArrayDeque<Bitmap>>();
+
+	private BitmapPool(int maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public static BitmapPool getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * 相当于BitmapFactory.decodeFile，尽量复用池中的bitmap
+	 *
+	 * @param width
+	 *            原图宽度（inJustDecodeBounds得到的outWidth），下同
+	 */
+	public Bitmap decodeFile(String path, BitmapFactory.Options options,
+			int width, int height) {
+		Bitmap reused = prepare(options, width, height, true);
+		try {
+			return finish(BitmapFactory.decodeFile(path, options), reused);
+		}
+		catch (IllegalArgumentException e) {
+			// 池中的bitmap不适用（如图片格式不支持复用），改为分配新的
+			return BitmapFactory.decodeFile(path, restore(options, reused));
+		}
+		finally {
+			options.inBitmap = null;
+		}
+	}
+
+	/**
+	 * 相当于BitmapFactory.decodeByteArray，尽量复用池中的bitmap
+	 */
+	public Bitmap decodeByteArray(byte[] data, BitmapFactory.Options options,
+			int width, int height) {
+		Bitmap reused = prepare(options, width, height, true);
+		try {
+			return finish(BitmapFactory.decodeByteArray(data, 0, data.length,
+					options), reused);
+		}
+		catch (IllegalArgumentException e) {
+			return BitmapFactory.decodeByteArray(data, 0, data.length,
+					restore(options, reused));
+		}
+		finally {
+			options.inBitmap = null;
+		}
+	}
+
+	/**
+	 * 相当于BitmapRegionDecoder.decodeRegion，API 16起复用池中的bitmap
+	 */
+	public Bitmap decodeRegion(BitmapRegionDecoder decoder, Rect rect,
+			BitmapFactory.Options options) {
+		Bitmap reused = prepare(options, rect.width(), rect.height(),
+				Build.VERSION.SDK_INT >= 16);
+		try {
+			return finish(decoder.decodeRegion(rect, options), reused);
+		}
+		catch (IllegalArgumentException e) {
+			return decoder.decodeRegion(rect, restore(options, reused));
+		}
+		finally {
+			options.inBitmap = null;
+		}
+	}
+
+	/**
+	 * 用完的bitmap放回池中；不能复用或池已满时直接回收。放回后调用方不能再使用它
+	 */
+	public void put(Bitmap bitmap) {
+		if (bitmap == null || bitmap.isRecycled()) {
+			return;
+		}
+		int size = byteCount(bitmap);
+		if (Build.VERSION.SDK_INT < 11 || !bitmap.isMutable()
+				|| size > maxBytes / 2) {
+			bitmap.recycle();
+			return;
+		}
+		synchronized (this) {
+			Integer bucket = bucketFor(size);
+			ArrayDeque<Bitmap> bitmaps = buckets.get(bucket);
+			if (bitmaps == null) {
+				bitmaps = new ArrayDeque<Bitmap>();
+				buckets.put(bucket, bitmaps);
+			}
+			bitmaps.addLast(bitmap);
+			currentBytes += size;
+			trimTo(maxBytes);
+		}
+	}
+
+	/**
+	 * 回收池中所有bitmap，如在内存不足时调用
+	 */
+	public synchronized void clear() {
+		trimTo(0);
+	}
+
+	/**
+	 * 在应用级别注册内存回调，系统要求释放内存时清空池，重复调用只注册一次。需要API 14，更低版本忽略
+	 */
+	public void registerMemoryCallbacks(Context context) {
+		if (Build.VERSION.SDK_INT < 14) {
+			return;
+		}
+		synchronized (this) {
+			if (callbacksRegistered) {
+				return;
+			}
+			callbacksRegistered = true;
+		}
+		context.getApplicationContext().registerComponentCallbacks(
+				new TrimCallbacks());
+	}
+
+	/**
+	 * 设置inMutable与inBitmap
+	 *
+	 * @return 取出的bitmap，解码失败时需要放回
+	 */
+	private Bitmap prepare(BitmapFactory.Options options, int width,
+			int height, boolean supported) {
+		if (Build.VERSION.SDK_INT < 11 || !supported) {
+			return null;
+		}
+		options.inMutable = true;
+		int sampleSize = Math.max(1, options.inSampleSize);
+		if (Build.VERSION.SDK_INT < 19 && sampleSize != 1) {
+			return null;
+		}
+		Bitmap.Config config = options.inPreferredConfig == null ? Bitmap.Config.ARGB_8888
+				: options.inPreferredConfig;
+		// 采样后的尺寸按向上取整估计，不会小于实际需要
+		int outWidth = (width + sampleSize - 1) / sampleSize;
+		int outHeight = (height + sampleSize - 1) / sampleSize;
+		Bitmap reused = take(outWidth, outHeight, config);
+		options.inBitmap = reused;
+		return reused;
+	}
+
+	/**
+	 * 解码失败时取出的bitmap没有被使用，放回池中
+	 */
+	private Bitmap finish(Bitmap decoded, Bitmap reused) {
+		if (decoded == null && reused != null) {
+			put(reused);
+		}
+		return decoded;
+	}
+
+	private BitmapFactory.Options restore(BitmapFactory.Options options,
+			Bitmap reused) {
+		options.inBitmap = null;
+		put(reused);
+		return options;
+	}
+
+	private synchronized Bitmap take(int width, int height,
+			Bitmap.Config config) {
+		if (Build.VERSION.SDK_INT < 19) {
+			// 只能复用尺寸和配置完全相同的
+			int size = width * height * bytesPerPixel(config);
+			ArrayDeque<Bitmap> bitmaps = buckets.get(bucketFor(size));
+			if (bitmaps != null) {
+				for (Iterator<Bitmap> it = bitmaps.iterator(); it.hasNext();) {
+					Bitmap bitmap = it.next();
+					if (bitmap.getWidth() == width
+							&& bitmap.getHeight() == height
+							&& bitmap.getConfig() == config) {
+						it.remove();
+						currentBytes -= byteCount(bitmap);
+						return bitmap;
+					}
+				}
+			}
+			return null;
+		}
+
+		// 从能容纳所需大小的最小的桶中取，桶不超过所需大小的两倍，避免用大bitmap装小图
+		int needed = width * height * bytesPerPixel(config);
+		Integer bucket = bucketFor(needed);
+		for (Map.Entry<Integer, ArrayDeque<Bitmap>> entry : buckets.tailMap(
+				bucket).entrySet()) {
+			if (entry.getKey() > bucket * 2) {
+				break;
+			}
+			for (Iterator<Bitmap> it = entry.getValue().iterator(); it
+					.hasNext();) {
+				Bitmap bitmap = it.next();
+				if (byteCount(bitmap) >= needed) {
+					it.remove();
+					currentBytes -= byteCount(bitmap);
+					return bitmap;
+				}
+			}
+		}
+		return null;
+	}
+
+	private void trimTo(int size) {
+		while (currentBytes > size && !buckets.isEmpty()) {
+			Map.Entry<Integer, ArrayDeque<Bitmap>> largest = buckets
+					.lastEntry();
+			Bitmap bitmap = largest.getValue().pollFirst();
+			if (largest.getValue().isEmpty()) {
+				buckets.remove(largest.getKey());
+			}
+			if (bitmap != null) {
+				currentBytes -= byteCount(bitmap);
+				bitmap.recycle();
+			}
+		}
+	}
+
+	private static Integer bucketFor(int size) {
+		return Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+	}
+
+	private static int byteCount(Bitmap bitmap) {
+		if (Build.VERSION.SDK_INT >= 19) {
+			return bitmap.getAllocationByteCount();
+		}
+		return bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	private static int bytesPerPixel(Bitmap.Config config) {
+		if (config == Bitmap.Config.ALPHA_8) {
+			return 1;
+		}
+		if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+			return 2;
+		}
+		return 4;
+	}
+
+	/**
+	 * 单独的类，API 14以下不会加载
+	 */
+	private static final class TrimCallbacks implements ComponentCallbacks2 {
+
+		@Override
+		public void onTrimMemory(int level) {
+			// 进入后台或前台内存不足时，池中的bitmap都可以重新分配
+			if (level >= TRIM_MEMORY_RUNNING_LOW) {
+				INSTANCE.clear();
+			}
+		}
+
+		@Override
+		public void onLowMemory() {
+			INSTANCE.clear();
+		}
+
+		@Override
+		public void onConfigurationChanged(Configuration newConfig) {
+		}
+	}
+}
@@ -5,11 +5,11 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
 import com.google.zxing.BarcodeFormat;
-import com.google.zxing.EncodeHintType;
-import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.WriterException;
-
-import java.util.Hashtable;
+import com.google.zxing.encode.BarcodeCache;
+import com.google.zxing.encode.BarcodeDrawable;
+import com.google.zxing.encode.BarcodeRenderer;
+import com.google.zxing.encode.EncodeHints;
 
 public class BitmapUtils {
 
@@ -65,32 +65,35 @@ public class BitmapUtils {
 	}
 
 	/**
-	 * 用字符串生成二维码
+	 * 用字符串生成二维码，返回的图片归调用方所有，可以修改或recycle
 	 *
 	 * @param str
 	 * @return
 	 * @throws WriterException
 	 */
 	public static Bitmap create2DCode(String str) throws WriterException {
-		Hashtable<EncodeHintType, String> hints = new Hashtable<EncodeHintType, String>();
-		hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-		// 生成二维矩阵,编码时指定大小,不要生成了图片以后再进行缩放,这样会模糊导致识别失败
-		BitMatrix matrix = new MultiFormatWriter().encode(str, BarcodeFormat.QR_CODE, 480, 480, hints);
-		int width = matrix.getWidth();
-		int height = matrix.getHeight();
-		// 二维矩阵转为一维像素数组,也就是一直横着排了
-		int[] pixels = new int[width * height];
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				if (matrix.get(x, y)) {
-					pixels[y * width + x] = 0xff000000;
-				}
-			}
-		}
+		// 同样的内容从缓存复制，省去编码和绘制
+		Bitmap shared = getCached2DCode(str);
+		return shared.copy(shared.getConfig(), true);
+	}
 
-		Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-		// 通过像素数组生成bitmap,具体参考api
-		bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
-		return bitmap;
+	/**
+	 * 用字符串生成二维码，同样的内容直接返回缓存的图片。图片由缓存共享，调用方不能修改或recycle，
+	 * 只用来显示时可以省去一次复制
+	 */
+	public static Bitmap getCached2DCode(String str) throws WriterException {
+		// 按模块分辨率编码后再整数倍放大绘制，同编码时直接指定大小一样清晰，不会因缩放模糊导致识别失败
+		return BarcodeCache.getInstance().get(str, BarcodeFormat.QR_CODE, 480,
+				480, null, EncodeHints.DEFAULT_MARGIN, Bitmap.Config.ARGB_8888);
+	}
+
+	/**
+	 * 用字符串生成按模块分辨率保存的二维码Drawable，显示大小由View决定，内存只有几KB
+	 */
+	public static BarcodeDrawable create2DCodeDrawable(String str)
+			throws WriterException {
+		return new BarcodeDrawable(BarcodeRenderer.encode(str,
+				BarcodeFormat.QR_CODE, EncodeHints.build(BarcodeFormat.QR_CODE,
+						null, EncodeHints.DEFAULT_MARGIN, "UTF-8")));
 	}
 }
@@ -39,6 +39,14 @@ public final class Config {
 	public static final String KEY_FRONT_LIGHT_MODE = "preferences_front_light_mode";
 	public static final String KEY_BULK_MODE = "preferences_bulk_mode";
 	public static final String KEY_REMEMBER_DUPLICATES = "preferences_remember_duplicates";
+	/**
+	 * 连续扫描时同一条码在多少毫秒内再次出现算作重复，字符串形式的整数
+	 */
+	public static final String KEY_DUPLICATE_WINDOW = "preferences_duplicate_window";
+	/**
+	 * 一帧中解出所有条码，而不是只返回第一个
+	 */
+	public static final String KEY_DECODE_MULTIPLE = "preferences_decode_multiple";
 	public static final String KEY_SUPPLEMENTAL = "preferences_supplemental";
 	public static final String KEY_AUTO_FOCUS = "preferences_auto_focus";
 	public static final String KEY_INVERT_SCAN = "preferences_invert_scan";
@@ -51,4 +59,15 @@ public final class Config {
 	public static final String KEY_DISABLE_BARCODE_SCENE_MODE = "preferences_disable_barcode_scene_mode";
 	public static final String KEY_AUTO_OPEN_WEB = "preferences_auto_open_web";
 
+	public static final String KEY_BINARIZER = "preferences_binarizer";
+	public static final String KEY_TIERED_BINARIZATION = "preferences_tiered_binarization";
+	/**
+	 * 扫描框内连续没有结果时，是否缩小解码整个画面，并把扫描区域移向框外的码
+	 */
+	public static final String KEY_FULL_FRAME_FALLBACK = "preferences_full_frame_fallback";
+	/**
+	 * 看到码但太小解不出来时是否自动变焦
+	 */
+	public static final String KEY_AUTO_ZOOM = "preferences_auto_zoom";
+
 }
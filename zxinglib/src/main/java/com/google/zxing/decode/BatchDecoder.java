@@ -0,0 +1,523 @@
+package com.google.zxing.decode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.zxing.Result;
+import com.google.zxing.common.BitmapPool;
+import com.google.zxing.common.DaemonExecutors;
+
+/**
+ * 批量识别图片中的条码。每张图片依次经过三个阶段：读取文件（I/O）、解码成bitmap、识别条码，
+ * 每个阶段各有固定数量的线程，不同图片的不同阶段同时进行。同时处理的图片数有上限，
+ * 因此内存占用与批量大小无关；每张图片处理完立即在主线程中回调，并附带各阶段耗时和错误
+ *
+ * @author hugo
+ *
+ */
+public final class BatchDecoder {
+
+	/**
+	 * 同时处理的图片数上限，每张最多占用一份压缩数据和一张不超过{@link #MAX_DECODE_PIXELS}的bitmap
+	 */
+	private static final int MAX_IN_FLIGHT = 4;
+
+	/**
+	 * 解码bitmap时的像素数上限，RGB_565下约8MB
+	 */
+	private static final int MAX_DECODE_PIXELS = 4 * 1024 * 1024;
+
+	private static final int CPU_THREADS = Math.max(1,
+			Math.min(2, Runtime.getRuntime().availableProcessors()));
+
+	private static final List<String> IMAGE_EXTENSIONS = Arrays.asList("jpg",
+			"jpeg", "png", "webp", "bmp", "gif");
+
+	/**
+	 * 各批量任务依次执行
+	 */
+	private static final DaemonExecutors.Lazy BATCH_EXECUTOR = new DaemonExecutors.Lazy(
+			"Batch", 1);
+
+	/**
+	 * 存储设备顺序读取最快，只用一个线程
+	 */
+	private static final DaemonExecutors.Lazy IO_EXECUTOR = new DaemonExecutors.Lazy(
+			"BatchIO", 1);
+
+	private static final DaemonExecutors.Lazy BITMAP_EXECUTOR = new DaemonExecutors.Lazy(
+			"BatchBitmap", CPU_THREADS);
+
+	private static final DaemonExecutors.Lazy BARCODE_EXECUTOR = new DaemonExecutors.Lazy(
+			"BatchBarcode", CPU_THREADS);
+
+	/**
+	 * 批量识别的回调，均在主线程中调用；批量任务取消后不再回调
+	 */
+	public interface Listener {
+
+		/**
+		 * 一张图片处理完毕，按完成的先后顺序回调
+		 */
+		void onItemDecoded(ItemResult item);
+
+		/**
+		 * @param total
+		 *            已处理的图片数
+		 * @param found
+		 *            其中识别出条码的图片数
+		 */
+		void onBatchFinished(int total, int found);
+	}
+
+	/**
+	 * 一张图片的处理结果
+	 */
+	public static final class ItemResult {
+
+		private final int index;
+		private final Uri uri;
+		private String key;
+		private boolean cached;
+		private Result result;
+		private Throwable error;
+		private long readMillis;
+		private long bitmapMillis;
+		private long decodeMillis;
+
+		/**
+		 * 是否已释放批量任务中的名额
+		 */
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		ItemResult(int index, Uri uri) {
+			this.index = index;
+			this.uri = uri;
+		}
+
+		/**
+		 * @return 在输入列表中的位置
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		public Uri getUri() {
+			return uri;
+		}
+
+		/**
+		 * @return 识别结果，结果点坐标相对于原图；未找到条码或出错时为null
+		 */
+		public Result getResult() {
+			return result;
+		}
+
+		/**
+		 * @return 读取或解码图片时的错误，没有错误时为null
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		/**
+		 * @return 结果是否来自缓存，此时没有解码阶段的耗时
+		 */
+		public boolean isCached() {
+			return cached;
+		}
+
+		public long getReadMillis() {
+			return readMillis;
+		}
+
+		public long getBitmapMillis() {
+			return bitmapMillis;
+		}
+
+		public long getDecodeMillis() {
+			return decodeMillis;
+		}
+
+		public long getTotalMillis() {
+			return readMillis + bitmapMillis + decodeMillis;
+		}
+	}
+
+	private final Context context;
+
+	/**
+	 * 与BitmapDecodeService共用，重复的图片读取后直接命中
+	 */
+	private final ResultCache resultCache;
+
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * 识别条码阶段每个线程一个解码器
+	 */
+	private final ThreadLocal<BitmapDecoder> decoders = new ThreadLocal<BitmapDecoder>() {
+		@Override
+		protected BitmapDecoder initialValue() {
+			return new BitmapDecoder(context);
+		}
+	};
+
+	public BatchDecoder(Context context) {
+		this.context = context.getApplicationContext();
+		resultCache = BitmapDecodeService.getInstance(context)
+				.getResultCache();
+	}
+
+	/**
+	 * 识别一组图片，file://与content://均可
+	 *
+	 * @return 取消（cancel(true)）后不再开始新的图片，也不再回调；结果为识别出条码的图片数
+	 */
+	public Future<Integer> decode(List<Uri> uris, Listener listener) {
+		BatchTask task = new BatchTask(new ArrayList<Uri>(uris), listener);
+		BATCH_EXECUTOR.get().execute(task);
+		return task;
+	}
+
+	/**
+	 * 识别一组图片文件
+	 */
+	public Future<Integer> decodeFiles(List<File> files, Listener listener) {
+		List<Uri> uris = new ArrayList<Uri>(files.size());
+		for (File file : files) {
+			uris.add(Uri.fromFile(file));
+		}
+		return decode(uris, listener);
+	}
+
+	/**
+	 * 识别目录下（不含子目录）的所有图片文件
+	 */
+	public Future<Integer> decodeDirectory(File directory, Listener listener) {
+		List<File> images = new ArrayList<File>();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				if (file.isFile() && isImage(file.getName())) {
+					images.add(file);
+				}
+			}
+		}
+		return decodeFiles(images, listener);
+	}
+
+	private static boolean isImage(String name) {
+		int dot = name.lastIndexOf('.');
+		return dot >= 0
+				&& IMAGE_EXTENSIONS.contains(name.substring(dot + 1)
+						.toLowerCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * 按顺序把图片送入流水线，同时处理的图片数不超过{@link #MAX_IN_FLIGHT}，全部完成后返回
+	 */
+	private final class BatchTask extends FutureTask<Integer> {
+
+		private final AtomicBoolean cancelled;
+
+		BatchTask(List<Uri> uris, Listener listener) {
+			this(uris, listener, new AtomicBoolean());
+		}
+
+		private BatchTask(final List<Uri> uris, final Listener listener,
+				final AtomicBoolean cancelled) {
+			super(new Callable<Integer>() {
+				@Override
+				public Integer call() throws InterruptedException {
+					return new Pipeline(listener, cancelled).run(uris);
+				}
+			});
+			this.cancelled = cancelled;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			cancelled.set(true);
+			return super.cancel(mayInterruptIfRunning);
+		}
+	}
+
+	private final class Pipeline {
+
+		private final Listener listener;
+		private final AtomicBoolean cancelled;
+		private final Semaphore permits = new Semaphore(MAX_IN_FLIGHT);
+		private final AtomicInteger found = new AtomicInteger();
+		private final ContentResolver resolver = context.getContentResolver();
+
+		Pipeline(Listener listener, AtomicBoolean cancelled) {
+			this.listener = listener;
+			this.cancelled = cancelled;
+		}
+
+		int run(List<Uri> uris) throws InterruptedException {
+			int total = 0;
+			try {
+				for (int i = 0; i < uris.size() && !cancelled.get(); i++) {
+					permits.acquire();
+					final ItemResult item = new ItemResult(i, uris.get(i));
+					total++;
+					IO_EXECUTOR.get().execute(new Runnable() {
+						@Override
+						public void run() {
+							read(item);
+						}
+					});
+				}
+				// 等待所有图片处理完毕
+				permits.acquire(MAX_IN_FLIGHT);
+			}
+			catch (InterruptedException e) {
+				cancelled.set(true);
+				throw e;
+			}
+			finally {
+				// 批量任务之间可能间隔很久，不再占着池中的bitmap
+				BitmapPool.getInstance().clear();
+			}
+			final int finishedTotal = total;
+			final int finishedFound = found.get();
+			mainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					if (!cancelled.get()) {
+						listener.onBatchFinished(finishedTotal, finishedFound);
+					}
+				}
+			});
+			return finishedFound;
+		}
+
+		private void read(final ItemResult item) {
+			if (cancelled.get()) {
+				release(item);
+				return;
+			}
+			// 任何一个阶段都必须释放名额，否则批量任务无法结束；出错的图片作为失败回调
+			try {
+				long start = System.nanoTime();
+				File file = null;
+				if (ContentResolver.SCHEME_FILE.equals(item.uri.getScheme())) {
+					// 文件大小和修改时间未变时不必读取内容即可查到缓存
+					file = new File(item.uri.getPath());
+					item.key = resultCache.knownKeyFor(file);
+					if (item.key != null && deliverCached(item, start)) {
+						return;
+					}
+				}
+				final byte[] data = readFully(item.uri);
+				if (item.key == null) {
+					// 内容只读一次，用读入的数据计算指纹
+					item.key = file != null ? resultCache.keyFor(file, data)
+							: ResultCache.fingerprint(data);
+					if (deliverCached(item, start)) {
+						return;
+					}
+				}
+				item.readMillis = elapsedMillis(start);
+				BITMAP_EXECUTOR.get().execute(new Runnable() {
+					@Override
+					public void run() {
+						decodeBitmap(item, data);
+					}
+				});
+			}
+			catch (IOException e) {
+				fail(item, e);
+			}
+			catch (RuntimeException e) {
+				// 如没有权限读取content://
+				fail(item, e);
+			}
+			catch (Error e) {
+				// 如OutOfMemoryError
+				fail(item, e);
+			}
+		}
+
+		private void decodeBitmap(final ItemResult item, byte[] data) {
+			if (cancelled.get()) {
+				release(item);
+				return;
+			}
+			try {
+				long start = System.nanoTime();
+				BitmapFactory.Options options = new BitmapFactory.Options();
+				options.inJustDecodeBounds = true;
+				BitmapFactory.decodeByteArray(data, 0, data.length, options);
+				int width = options.outWidth;
+				int height = options.outHeight;
+				if (width <= 0 || height <= 0) {
+					fail(item, new IOException("Unsupported image: " + item.uri));
+					return;
+				}
+				int sampleSize = 1;
+				while ((width / sampleSize) * (height / sampleSize) > MAX_DECODE_PIXELS) {
+					sampleSize *= 2;
+				}
+				options.inJustDecodeBounds = false;
+				options.inSampleSize = sampleSize;
+				options.inPreferredConfig = Bitmap.Config.RGB_565;
+				final Bitmap bitmap = BitmapPool.getInstance().decodeByteArray(
+						data, options, width, height);
+				if (bitmap == null) {
+					fail(item, new IOException("Unable to decode " + item.uri));
+					return;
+				}
+				final float scale = (float) width / bitmap.getWidth();
+				item.bitmapMillis = elapsedMillis(start);
+				BARCODE_EXECUTOR.get().execute(new Runnable() {
+					@Override
+					public void run() {
+						decodeBarcode(item, bitmap, scale);
+					}
+				});
+			}
+			catch (RuntimeException e) {
+				fail(item, e);
+			}
+			catch (Error e) {
+				fail(item, e);
+			}
+		}
+
+		private void decodeBarcode(ItemResult item, Bitmap bitmap, float scale) {
+			if (cancelled.get()) {
+				BitmapPool.getInstance().put(bitmap);
+				release(item);
+				return;
+			}
+			try {
+				long start = System.nanoTime();
+				Result result;
+				try {
+					result = decoders.get().getRawResult(bitmap);
+				}
+				finally {
+					BitmapPool.getInstance().put(bitmap);
+				}
+				item.decodeMillis = elapsedMillis(start);
+				if (result != null) {
+					item.result = BitmapDecoder.transform(result, scale, 0, 0);
+					found.incrementAndGet();
+				}
+				resultCache.put(item.key, item.result);
+				deliver(item);
+			}
+			catch (RuntimeException e) {
+				fail(item, e);
+			}
+			catch (Error e) {
+				// 如OutOfMemoryError或解码中的StackOverflowError
+				fail(item, e);
+			}
+		}
+
+		/**
+		 * 缓存命中时直接回调，跳过后续阶段
+		 */
+		private boolean deliverCached(ItemResult item, long start) {
+			ResultCache.Entry entry = resultCache.get(item.key);
+			if (entry == null) {
+				return false;
+			}
+			item.readMillis = elapsedMillis(start);
+			item.cached = true;
+			item.result = entry.getResult();
+			if (item.result != null) {
+				found.incrementAndGet();
+			}
+			deliver(item);
+			return true;
+		}
+
+		private void fail(ItemResult item, Throwable error) {
+			if (item.released.get()) {
+				// 已经回调过，如回调之后出错
+				return;
+			}
+			if (item.result != null) {
+				// 结果已计入found，出错后不再作为识别出的图片
+				item.result = null;
+				found.decrementAndGet();
+			}
+			item.error = error;
+			deliver(item);
+		}
+
+		/**
+		 * 释放图片占用的名额，每张图片只释放一次
+		 */
+		private void release(ItemResult item) {
+			if (item.released.compareAndSet(false, true)) {
+				permits.release();
+			}
+		}
+
+		/**
+		 * 回调并释放占用的名额
+		 */
+		private void deliver(final ItemResult item) {
+			release(item);
+			mainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					if (!cancelled.get()) {
+						listener.onItemDecoded(item);
+					}
+				}
+			});
+		}
+
+		private byte[] readFully(Uri uri) throws IOException {
+			InputStream in = resolver.openInputStream(uri);
+			if (in == null) {
+				throw new FileNotFoundException(uri.toString());
+			}
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+				byte[] buffer = new byte[16 * 1024];
+				int count;
+				while ((count = in.read(buffer)) != -1) {
+					out.write(buffer, 0, count);
+				}
+				return out.toByteArray();
+			}
+			finally {
+				in.close();
+			}
+		}
+	}
+
+	private static long elapsedMillis(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1000000L;
+	}
+}
@@ -0,0 +1,245 @@
+package com.google.zxing.decode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.zxing.Result;
+import com.google.zxing.common.BitmapPool;
+import com.google.zxing.common.DaemonExecutors;
+
+/**
+ * 常驻的图片解码服务，线程安全。固定数量的后台线程各自持有一个{@link BitmapDecoder}，
+ * 多次解码之间复用读取器和hints，不必每次重新创建；解码以Future形式返回，可以取消，
+ * 也可以在主线程中回调
+ *
+ * @author hugo
+ *
+ */
+public final class BitmapDecodeService {
+
+	private static final String TAG = BitmapDecodeService.class
+			.getSimpleName();
+
+	/**
+	 * 图片解码占用内存较多，同时解码的图片数不超过2张
+	 */
+	private static final int THREADS = Math.max(1,
+			Math.min(2, Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * 解码结果缓存：内存中保留的条数、磁盘中保留的条数、未找到条码的结果的有效期
+	 */
+	private static final int CACHE_MEMORY_ENTRIES = 128;
+	private static final int CACHE_DISK_ENTRIES = 2048;
+	private static final long CACHE_NEGATIVE_TTL = 10 * 60 * 1000L;
+
+	private static BitmapDecodeService instance;
+
+	/**
+	 * 解码回调，在主线程中调用；任务被取消后不会回调
+	 */
+	public interface Callback {
+
+		/**
+		 * @param result
+		 *            已在后台线程中解析好的结果
+		 */
+		void onDecodeSucceeded(PreparedResult result);
+
+		void onDecodeFailed();
+	}
+
+	private final Context context;
+
+	private final ExecutorService executor;
+
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * 已提交、尚未执行完的任务数，降为0时清空Bitmap池
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/**
+	 * 重复选择同一张图片时直接返回上次的结果
+	 */
+	private final ResultCache resultCache;
+
+	/**
+	 * MultiFormatReader不是线程安全的，每个工作线程一个解码器
+	 */
+	private final ThreadLocal<BitmapDecoder> decoders = new ThreadLocal<BitmapDecoder>() {
+		@Override
+		protected BitmapDecoder initialValue() {
+			return new BitmapDecoder(context);
+		}
+	};
+
+	private BitmapDecodeService(Context context) {
+		this.context = context;
+		resultCache = new ResultCache(CACHE_MEMORY_ENTRIES, new File(
+				context.getCacheDir(), "zxing-results"), CACHE_DISK_ENTRIES,
+				CACHE_NEGATIVE_TTL);
+		executor = new ThreadPoolExecutor(THREADS, THREADS, 0L,
+				TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				DaemonExecutors.threadFactory("BitmapDecoder"));
+		BitmapPool.getInstance().registerMemoryCallbacks(context);
+	}
+
+	public static synchronized BitmapDecodeService getInstance(Context context) {
+		if (instance == null) {
+			instance = new BitmapDecodeService(context.getApplicationContext());
+		}
+		return instance;
+	}
+
+	/**
+	 * 应用内共用的解码结果缓存
+	 */
+	ResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * 在后台渐进解码图片文件，内容相同的图片直接返回缓存的结果
+	 *
+	 * @param path
+	 *            图片路径
+	 * @param callback
+	 *            可以为null
+	 * @return 结果为null表示未找到条码；cancel(true)会在两轮解码之间中止
+	 */
+	public Future<Result> decode(final String path, Callback callback) {
+		return submit(new Callable<Result>() {
+			@Override
+			public Result call() {
+				String key;
+				try {
+					key = resultCache.keyFor(new File(path));
+				}
+				catch (IOException e) {
+					Log.w(TAG, "Unable to fingerprint " + path, e);
+					return decoders.get().getRawResult(path);
+				}
+				ResultCache.Entry cached = resultCache.get(key);
+				if (cached != null) {
+					return cached.getResult();
+				}
+				Result result = decoders.get().getRawResult(path);
+				if (!Thread.currentThread().isInterrupted()) {
+					// 被取消时结果不完整，不能缓存
+					resultCache.put(key, result);
+				}
+				return result;
+			}
+		}, callback);
+	}
+
+	/**
+	 * 在后台解码bitmap，解码期间调用方不能回收它
+	 *
+	 * @param callback
+	 *            可以为null
+	 * @return 结果为null表示未找到条码
+	 */
+	public Future<Result> decode(final Bitmap bitmap, Callback callback) {
+		return submit(new Callable<Result>() {
+			@Override
+			public Result call() {
+				return decoders.get().getRawResult(bitmap);
+			}
+		}, callback);
+	}
+
+	private Future<Result> submit(Callable<Result> callable, Callback callback) {
+		DecodeTask task = new DecodeTask(callable, callback);
+		pending.incrementAndGet();
+		executor.execute(task);
+		return task;
+	}
+
+	private final class DecodeTask extends FutureTask<Result> {
+
+		private final Callback callback;
+
+		/**
+		 * 任务完成后再取消时FutureTask不会记录，这里单独记录以免仍然回调
+		 */
+		private volatile boolean cancelled;
+
+		DecodeTask(Callable<Result> callable, Callback callback) {
+			super(callable);
+			this.callback = callback;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			cancelled = true;
+			return super.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		public void run() {
+			try {
+				super.run();
+			}
+			finally {
+				if (pending.decrementAndGet() == 0) {
+					// 空闲时不再占着池中的bitmap
+					BitmapPool.getInstance().clear();
+				}
+			}
+		}
+
+		@Override
+		protected void done() {
+			if (callback == null || isCancelled()) {
+				return;
+			}
+			PreparedResult prepared = null;
+			try {
+				Result decoded = get();
+				if (decoded != null) {
+					// 在解码线程中解析，主线程只负责显示
+					prepared = ResultProcessor.prepare(decoded, null, 0);
+				}
+			}
+			catch (ExecutionException e) {
+				Log.w(TAG, "Bitmap decode failed", e.getCause());
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			final PreparedResult result = prepared;
+			mainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					if (cancelled) {
+						return;
+					}
+					if (result != null) {
+						callback.onDecodeSucceeded(result);
+					}
+					else {
+						callback.onDecodeFailed();
+					}
+				}
+			});
+		}
+	}
+}
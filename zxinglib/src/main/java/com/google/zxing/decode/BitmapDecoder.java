@@ -1,53 +1,104 @@
 package com.google.zxing.decode;
 
-import java.util.Hashtable;
-import java.util.Vector;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
+import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.os.Build;
+import android.util.Log;
 
-import com.google.zxing.BarcodeFormat;
 import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
 import com.google.zxing.MultiFormatReader;
 import com.google.zxing.NotFoundException;
 import com.google.zxing.Result;
-import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+import com.google.zxing.common.BitmapPool;
 
 /**
- * 从bitmap解码
+ * 从bitmap解码。不是线程安全的，多线程共用时请使用{@link BitmapDecodeService}
  * 
  * @author hugo
  * 
  */
 public class BitmapDecoder {
 
+	private static final String TAG = BitmapDecoder.class.getSimpleName();
+
+	/**
+	 * 渐进解码第一轮图片长边的上限
+	 */
+	private static final int COARSE_MAX_DIMENSION = 1024;
+
+	/**
+	 * 渐进解码最精细一轮的像素数上限，RGB_565下约8MB
+	 */
+	private static final int MAX_DECODE_PIXELS = 4 * 1024 * 1024;
+
+	/**
+	 * 根据上一轮可疑点裁剪区域时，四周额外保留的比例
+	 */
+	private static final float REGION_MARGIN = 0.5f;
+
 	MultiFormatReader multiFormatReader;
 
+	private final Context context;
+
+	/**
+	 * 超大图片分块解码，首次使用时创建
+	 */
+	private TiledDecoder tiledDecoder;
+
+	/**
+	 * 记录解码过程中发现的可疑点，用于渐进解码时缩小下一轮的解码区域
+	 */
+	private final PointRecorder pointRecorder = new PointRecorder();
+
+	private final BinarizerType binarizerType;
+
+	/**
+	 * 各轮解码的bitmap取完亮度后放回池中复用
+	 */
+	private final BitmapPool bitmapPool = BitmapPool.getInstance();
+
+	/**
+	 * 先按行解码一维码，二维码读取器只在其失败时才计算整幅二值化矩阵
+	 */
+	private final OneDFastPath oneDFastPath;
+
 	public BitmapDecoder(Context context) {
+		// 相册图片通常较大，结果与HYBRID一致，小图时不会并行
+		this(context, BinarizerType.PARALLEL);
+	}
 
-		multiFormatReader = new MultiFormatReader();
+	/**
+	 * @param binarizerType
+	 *            解码时使用的二值化算法
+	 */
+	public BitmapDecoder(Context context, BinarizerType binarizerType) {
 
-		// 解码的参数
-		Hashtable<DecodeHintType, Object> hints = new Hashtable<DecodeHintType, Object>(
-				2);
-		// 可以解析的编码类型
-		Vector<BarcodeFormat> decodeFormats = new Vector<BarcodeFormat>();
-		if (decodeFormats == null || decodeFormats.isEmpty()) {
-			decodeFormats = new Vector<BarcodeFormat>();
+		this.context = context;
+		this.binarizerType = binarizerType;
+		multiFormatReader = new MultiFormatReader();
 
-			// 这里设置可扫描的类型，我这里选择了都支持
-			decodeFormats.addAll(DecodeFormatManager.ONE_D_FORMATS);
-			decodeFormats.addAll(DecodeFormatManager.QR_CODE_FORMATS);
-			decodeFormats.addAll(DecodeFormatManager.DATA_MATRIX_FORMATS);
-		}
-		hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
+		// 解码的参数：支持所有类型，字符编码为UTF8
+		Map<DecodeHintType, Object> hints = DecodeFormats.buildHints(null,
+				"UTF8");
 
-		// 设置继续的字符编码格式为UTF8
-		hints.put(DecodeHintType.CHARACTER_SET, "UTF8");
+		hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, pointRecorder);
 
-		// 设置解析配置参数
-		multiFormatReader.setHints(hints);
+		// 设置解析配置参数，一维码交给快速通道
+		oneDFastPath = OneDFastPath.create(hints);
+		multiFormatReader.setHints(OneDFastPath.withoutOneD(hints));
 
 	}
 
@@ -62,14 +113,223 @@ public class BitmapDecoder {
 			return null;
 		}
 
+		LuminanceSource source = new BitmapLuminanceSource(bitmap);
+		Result result = oneDFastPath.decode(source);
+		if (result != null) {
+			return result;
+		}
+
 		try {
 			return multiFormatReader.decodeWithState(new BinaryBitmap(
-					new HybridBinarizer(new BitmapLuminanceSource(bitmap))));
+					binarizerType.create(source)));
 		}
 		catch (NotFoundException e) {
-			e.printStackTrace();
+			// 未找到条码是常见情况，不打印堆栈
+			return null;
+		}
+		finally {
+			multiFormatReader.reset();
+		}
+	}
+
+	/**
+	 * 渐进解码图片文件：先以较大的inSampleSize解码出小图尝试，失败后逐级减半采样率直到成功或达到上限。
+	 * 如果上一轮发现了可疑点，下一轮优先只解码该区域（API 10+），最后才解码整幅图片。
+	 * 图片太大、受内存限制无法以原始分辨率整体解码时，最后按原始分辨率分块解码
+	 * 
+	 * @param path
+	 *            图片路径
+	 * @return 解码结果，结果点坐标相对于原图；失败返回null
+	 */
+	public Result getRawResult(String path) {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeFile(path, options);
+		int width = options.outWidth;
+		int height = options.outHeight;
+		if (width <= 0 || height <= 0) {
+			return null;
 		}
 
+		int sampleSize = 1;
+		while (Math.max(width, height) / sampleSize > COARSE_MAX_DIMENSION) {
+			sampleSize *= 2;
+		}
+		int minSampleSize = 1;
+		while ((width / minSampleSize) * (height / minSampleSize) > MAX_DECODE_PIXELS) {
+			minSampleSize *= 2;
+		}
+
+		options.inJustDecodeBounds = false;
+		options.inPreferredConfig = Bitmap.Config.RGB_565;
+		// 各轮解码共用同一块临时缓冲区
+		options.inTempStorage = new byte[16 * 1024];
+		Rect region = null;
+		for (; sampleSize >= minSampleSize; sampleSize /= 2) {
+			if (Thread.currentThread().isInterrupted()) {
+				// 任务已被取消
+				return null;
+			}
+			options.inSampleSize = sampleSize;
+
+			if (region != null) {
+				Result result = decodeRegion(path, region, options);
+				if (result != null) {
+					return result;
+				}
+			}
+
+			Bitmap bitmap = bitmapPool.decodeFile(path, options, width, height);
+			if (bitmap == null) {
+				return null;
+			}
+			pointRecorder.reset();
+			Result result = getRawResult(bitmap);
+			float scale = (float) width / bitmap.getWidth();
+			bitmapPool.put(bitmap);
+			if (result != null) {
+				return transform(result, scale, 0, 0);
+			}
+			region = pointRecorder.getRegion(scale, width, height);
+
+			if (sampleSize == 1) {
+				break;
+			}
+		}
+
+		if (minSampleSize > 1 && !Thread.currentThread().isInterrupted()) {
+			List<Result> results = decodeTiled(path, 1, false);
+			if (!results.isEmpty()) {
+				return results.get(0);
+			}
+		}
 		return null;
 	}
+
+	/**
+	 * 分块解码超大图片，内存峰值只与块大小有关。需要API 10，更低版本返回空列表
+	 * 
+	 * @param path
+	 *            图片路径
+	 * @param sampleSize
+	 *            读取每块时的inSampleSize
+	 * @param findAll
+	 *            为true时扫描所有块并返回全部的码，否则找到第一个即停止
+	 * @return 去重后的解码结果，结果点坐标相对于原图
+	 */
+	public List<Result> decodeTiled(String path, int sampleSize,
+			boolean findAll) {
+		if (Build.VERSION.SDK_INT < 10) {
+			return new ArrayList<Result>(0);
+		}
+		TiledDecoder decoder;
+		synchronized (this) {
+			if (tiledDecoder == null) {
+				tiledDecoder = new TiledDecoder(context);
+			}
+			decoder = tiledDecoder;
+		}
+		return decoder.decode(path, sampleSize, findAll);
+	}
+
+	@SuppressLint("NewApi")
+	private Result decodeRegion(String path, Rect region,
+			BitmapFactory.Options options) {
+		if (Build.VERSION.SDK_INT < 10) {
+			return null;
+		}
+		BitmapRegionDecoder regionDecoder = null;
+		try {
+			regionDecoder = BitmapRegionDecoder.newInstance(path, false);
+			Bitmap bitmap = bitmapPool.decodeRegion(regionDecoder, region,
+					options);
+			if (bitmap == null) {
+				return null;
+			}
+			Result result = getRawResult(bitmap);
+			float scale = (float) region.width() / bitmap.getWidth();
+			bitmapPool.put(bitmap);
+			return result == null ? null : transform(result, scale,
+					region.left, region.top);
+		}
+		catch (IOException e) {
+			Log.w(TAG, "Unable to decode region of " + path, e);
+			return null;
+		}
+		finally {
+			if (regionDecoder != null) {
+				regionDecoder.recycle();
+			}
+		}
+	}
+
+	static Result transform(Result result, float scale, int left,
+			int top) {
+		ResultPoint[] points = result.getResultPoints();
+		if (points == null || (scale == 1.0f && left == 0 && top == 0)) {
+			return result;
+		}
+		ResultPoint[] transformed = new ResultPoint[points.length];
+		for (int i = 0; i < points.length; i++) {
+			ResultPoint point = points[i];
+			transformed[i] = point == null ? null : new ResultPoint(
+					point.getX() * scale + left, point.getY() * scale + top);
+		}
+		Result copy = new Result(result.getText(), result.getRawBytes(),
+				transformed, result.getBarcodeFormat(), result.getTimestamp());
+		copy.putAllMetadata(result.getResultMetadata());
+		return copy;
+	}
+
+	/**
+	 * 记录可疑点的外接矩形
+	 */
+	private static final class PointRecorder implements ResultPointCallback {
+
+		private float minX;
+		private float minY;
+		private float maxX;
+		private float maxY;
+		private boolean found;
+
+		void reset() {
+			found = false;
+		}
+
+		/**
+		 * @return 按scale换算到原图并扩展后的区域；没有可疑点或区域接近整幅图片时返回null
+		 */
+		Rect getRegion(float scale, int width, int height) {
+			if (!found) {
+				return null;
+			}
+			float padX = Math.max((maxX - minX) * REGION_MARGIN, 16) * scale;
+			float padY = Math.max((maxY - minY) * REGION_MARGIN, 16) * scale;
+			Rect region = new Rect(Math.max(0, (int) (minX * scale - padX)),
+					Math.max(0, (int) (minY * scale - padY)), Math.min(width,
+							(int) (maxX * scale + padX) + 1), Math.min(height,
+							(int) (maxY * scale + padY) + 1));
+			if (region.width() * region.height() > width * height / 2) {
+				return null;
+			}
+			return region;
+		}
+
+		@Override
+		public void foundPossibleResultPoint(ResultPoint point) {
+			float x = point.getX();
+			float y = point.getY();
+			if (!found) {
+				minX = maxX = x;
+				minY = maxY = y;
+				found = true;
+			}
+			else {
+				minX = Math.min(minX, x);
+				minY = Math.min(minY, y);
+				maxX = Math.max(maxX, x);
+				maxY = Math.max(maxY, y);
+			}
+		}
+	}
 }
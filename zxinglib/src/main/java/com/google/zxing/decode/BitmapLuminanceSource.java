@@ -1,37 +1,131 @@
 package com.google.zxing.decode;
 
+import java.nio.ByteBuffer;
+
 import android.graphics.Bitmap;
 
 import com.google.zxing.LuminanceSource;
 
+/**
+ * 从Bitmap取亮度。按行带（strip）分批读取像素到一个小缓冲区中再换算，不再复制整幅int[]；
+ * 只按行取数据时（一维码）不生成整幅亮度矩阵。亮度按RGB加权计算，半透明像素按白色背景合成。
+ * ALPHA_8直接读取原始数据，不经过ARGB展开。RGB_565也按行带读取：copyPixelsToBuffer只能一次复制整幅，
+ * 需要再分配一份与整幅图像等大的临时数组
+ */
 public class BitmapLuminanceSource extends LuminanceSource {
 
-	private byte bitmapPixels[];
+	/**
+	 * 每次读取的行数
+	 */
+	private static final int STRIP_HEIGHT = 16;
 
-	protected BitmapLuminanceSource(Bitmap bitmap) {
-		super(bitmap.getWidth(), bitmap.getHeight());
+	private final Bitmap bitmap;
 
-		// 首先，要取得该图片的像素数组内容
-		int[] data = new int[bitmap.getWidth() * bitmap.getHeight()];
-		this.bitmapPixels = new byte[bitmap.getWidth() * bitmap.getHeight()];
-		bitmap.getPixels(data, 0, getWidth(), 0, 0, getWidth(), getHeight());
+	/**
+	 * 整幅亮度矩阵，首次调用getMatrix时生成
+	 */
+	private byte[] bitmapPixels;
 
-		// 将int数组转换为byte数组，也就是取像素值中蓝色值部分作为辨析内容
-		for (int i = 0; i < data.length; i++) {
-			this.bitmapPixels[i] = (byte) data[i];
-		}
+	private int[] pixelBuffer;
+
+	protected BitmapLuminanceSource(Bitmap bitmap) {
+		super(bitmap.getWidth(), bitmap.getHeight());
+		this.bitmap = bitmap;
 	}
 
 	@Override
 	public byte[] getMatrix() {
-		// 返回我们生成好的像素数据
+		if (bitmapPixels == null) {
+			Bitmap.Config config = bitmap.getConfig();
+			if (config == Bitmap.Config.ALPHA_8) {
+				bitmapPixels = readAlpha8();
+			}
+			else {
+				bitmapPixels = readArgbStrips();
+			}
+			pixelBuffer = null;
+		}
 		return bitmapPixels;
 	}
 
 	@Override
 	public byte[] getRow(int y, byte[] row) {
-		// 这里要得到指定行的像素数据
-		System.arraycopy(bitmapPixels, y * getWidth(), row, 0, getWidth());
+		if (y < 0 || y >= getHeight()) {
+			throw new IllegalArgumentException(
+					"Requested row is outside the image: " + y);
+		}
+		int width = getWidth();
+		if (row == null || row.length < width) {
+			row = new byte[width];
+		}
+		if (bitmapPixels != null) {
+			System.arraycopy(bitmapPixels, y * width, row, 0, width);
+			return row;
+		}
+		// 这里要得到指定行的像素数据，只读取这一行
+		if (pixelBuffer == null || pixelBuffer.length < width) {
+			pixelBuffer = new int[width];
+		}
+		bitmap.getPixels(pixelBuffer, 0, width, 0, y, width, 1);
+		for (int x = 0; x < width; x++) {
+			row[x] = (byte) luminance(pixelBuffer[x]);
+		}
 		return row;
 	}
-}
\ No newline at end of file
+
+	private byte[] readArgbStrips() {
+		int width = getWidth();
+		int height = getHeight();
+		byte[] luminances = new byte[width * height];
+		int[] strip = new int[width * Math.min(STRIP_HEIGHT, height)];
+		for (int top = 0; top < height; top += STRIP_HEIGHT) {
+			int rows = Math.min(STRIP_HEIGHT, height - top);
+			bitmap.getPixels(strip, 0, width, 0, top, width, rows);
+			int offset = top * width;
+			for (int i = 0, count = rows * width; i < count; i++) {
+				luminances[offset + i] = (byte) luminance(strip[i]);
+			}
+		}
+		return luminances;
+	}
+
+	/**
+	 * ALPHA_8只有透明度，按画在白色背景上的效果取亮度：不透明为黑，透明为白
+	 */
+	private byte[] readAlpha8() {
+		int width = getWidth();
+		int height = getHeight();
+		int rowBytes = bitmap.getRowBytes();
+		byte[] luminances = new byte[width * height];
+		if (rowBytes == width) {
+			bitmap.copyPixelsToBuffer(ByteBuffer.wrap(luminances));
+		}
+		else {
+			byte[] padded = new byte[rowBytes * height];
+			bitmap.copyPixelsToBuffer(ByteBuffer.wrap(padded));
+			for (int y = 0; y < height; y++) {
+				System.arraycopy(padded, y * rowBytes, luminances, y * width,
+						width);
+			}
+		}
+		for (int i = 0; i < luminances.length; i++) {
+			luminances[i] = (byte) (255 - (luminances[i] & 0xff));
+		}
+		return luminances;
+	}
+
+	/**
+	 * 按0.299R + 0.587G + 0.114B计算亮度，半透明像素与白色背景合成
+	 */
+	private static int luminance(int argb) {
+		int r = (argb >> 16) & 0xff;
+		int g = (argb >> 8) & 0xff;
+		int b = argb & 0xff;
+		int luminance = (77 * r + 150 * g + 29 * b) >> 8;
+		int alpha = argb >>> 24;
+		if (alpha != 0xff) {
+			luminance = (luminance * alpha + 255 * (255 - alpha)) / 255;
+		}
+		return luminance;
+	}
+}
@@ -19,27 +19,27 @@ package com.google.zxing.decode;
 import android.app.Activity;
 import android.content.ActivityNotFoundException;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
-import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.preference.PreferenceManager;
 import android.provider.Browser;
 import android.util.Log;
 
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.R;
-import com.google.zxing.Result;
 import com.google.zxing.camera.CameraManager;
+import com.google.zxing.config.Config;
 import com.google.zxing.view.ViewfinderResultPointCallback;
 import com.google.zxing.activity.CaptureActivity;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -53,8 +53,15 @@ public final class CaptureActivityHandler extends Handler {
     private static final String TAG = CaptureActivityHandler.class
             .getSimpleName();
 
+    /**
+     * 每创建一个handler代数加一；解码线程回传的结果带有代数，与当前代数不符的过期结果直接丢弃
+     */
+    private static final AtomicInteger GENERATIONS = new AtomicInteger();
+
     private final CaptureActivity activity;
 
+    private final int generation;
+
     /**
      * 真正负责扫描任务的核心线程
      */
@@ -87,11 +94,15 @@ public final class CaptureActivityHandler extends Handler {
                                   Map<DecodeHintType, ?> baseHints, String characterSet,
                                   CameraManager cameraManager) {
         this.activity = activity;
+        this.generation = GENERATIONS.incrementAndGet();
+
+        // 看到码但太小时自动变焦，可疑点经扫描框的回调转给它
+        AutoZoomController autoZoom = createAutoZoom(activity, cameraManager);
 
         // 启动扫描线程
         decodeThread = new DecodeThread(activity, decodeFormats, baseHints,
                 characterSet, new ViewfinderResultPointCallback(
-                activity.getViewfinderView()));
+                activity.getViewfinderView(), autoZoom), autoZoom, generation);
         decodeThread.start();
 
         state = State.SUCCESS;
@@ -107,30 +118,28 @@ public final class CaptureActivityHandler extends Handler {
 
     @Override
     public void handleMessage(Message message) {
+        if ((message.what == R.id.decode_succeeded
+                || message.what == R.id.decode_failed)
+                && (state == State.DONE || message.arg1 != generation)) {
+            Log.d(TAG, "Dropping stale decode result");
+            return;
+        }
         if (message.what == R.id.restart_preview) { // 准备进行下一次扫描
             Log.d(TAG, "Got restart preview message");
             restartPreviewAndDecode();
         } else if (message.what == R.id.decode_succeeded) {
             Log.d(TAG, "Got decode succeeded message");
             state = State.SUCCESS;
-            Bundle bundle = message.getData();
-            Bitmap barcode = null;
-            float scaleFactor = 1.0f;
-            if (bundle != null) {
-                byte[] compressedBitmap = bundle
-                        .getByteArray(DecodeThread.BARCODE_BITMAP);
-                if (compressedBitmap != null) {
-                    barcode = BitmapFactory.decodeByteArray(
-                            compressedBitmap, 0, compressedBitmap.length,
-                            null);
-                    // Mutable copy:
-                    barcode = barcode.copy(Bitmap.Config.ARGB_8888, true);
-                }
-                scaleFactor = bundle
-                        .getFloat(DecodeThread.BARCODE_SCALED_FACTOR);
+            if (activity.isBulkMode()) {
+                // 连续扫描：先请求下一帧，解码与界面提示同时进行
+                restartPreviewAndDecode();
+            }
+            // 结果已在ResultProcessor中解析好，缩略图也已生成
+            if (message.obj instanceof ResultBatch) {
+                activity.handleDecodeBatch((ResultBatch) message.obj);
+            } else {
+                activity.handleDecode((PreparedResult) message.obj);
             }
-            activity.handleDecode((Result) message.obj, barcode,
-                    scaleFactor);
         } else if (message.what == R.id.decode_failed) {
             // We're decoding as fast as possible, so when one decode fails,
             // start another.
@@ -179,23 +188,38 @@ public final class CaptureActivityHandler extends Handler {
         }
     }
 
-    public void quitSynchronously() {
+    /**
+     * 结束扫描，立即返回而不等待解码线程退出。排队中的帧被跳过，之后到达的解码结果按代数丢弃；
+     * 相机的停止预览与释放由{@link CameraManager#closeDriverAsync()}在相机线程中完成
+     */
+    public void quit() {
         state = State.DONE;
-        cameraManager.stopPreview();
-        Message quit = Message.obtain(decodeThread.getHandler(), R.id.quit);
-        quit.sendToTarget();
-
-        try {
-            // Wait at most half a second; should be enough time, and onPause()
-            // will timeout quickly
-            decodeThread.join(500L);
-        } catch (InterruptedException e) {
-            // continue
-        }
+        decodeThread.quit();
+    }
+
+    /**
+     * 解码结果需携带此值（message.arg1）才会被处理
+     */
+    public int getGeneration() {
+        return generation;
+    }
 
-        // Be absolutely sure we don't send any queued up messages
-        removeMessages(R.id.decode_succeeded);
-        removeMessages(R.id.decode_failed);
+    /**
+     * @return 设置中关闭了自动变焦或相机不支持变焦时为null
+     */
+    private static AutoZoomController createAutoZoom(CaptureActivity activity,
+                                                     CameraManager cameraManager) {
+        AutoZoomController autoZoom = null;
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(activity);
+        if (prefs.getBoolean(Config.KEY_AUTO_ZOOM, true)) {
+            int[] zoomRatios = cameraManager.getZoomRatios();
+            if (zoomRatios != null && zoomRatios.length >= 2) {
+                // 从相机当前的变焦级别开始，手动变焦时由CameraManager通知
+                autoZoom = new AutoZoomController(zoomRatios, cameraManager.getZoom());
+            }
+        }
+        cameraManager.setAutoZoom(autoZoom);
+        return autoZoom;
     }
 
     /**
@@ -31,21 +31,11 @@ final class DecodeFormatManager {
 
 	private static final Pattern COMMA_PATTERN = Pattern.compile(",");
 
-	static final Collection<BarcodeFormat> PRODUCT_FORMATS;
-	static final Collection<BarcodeFormat> ONE_D_FORMATS;
-	static final Collection<BarcodeFormat> QR_CODE_FORMATS = EnumSet
-			.of(BarcodeFormat.QR_CODE);
-	static final Collection<BarcodeFormat> DATA_MATRIX_FORMATS = EnumSet
-			.of(BarcodeFormat.DATA_MATRIX);
-	static {
-		PRODUCT_FORMATS = EnumSet.of(BarcodeFormat.UPC_A, BarcodeFormat.UPC_E,
-				BarcodeFormat.EAN_13, BarcodeFormat.EAN_8,
-				BarcodeFormat.RSS_14, BarcodeFormat.RSS_EXPANDED);
-		ONE_D_FORMATS = EnumSet.of(BarcodeFormat.CODE_39,
-				BarcodeFormat.CODE_93, BarcodeFormat.CODE_128,
-				BarcodeFormat.ITF, BarcodeFormat.CODABAR);
-		ONE_D_FORMATS.addAll(PRODUCT_FORMATS);
-	}
+	// 格式集合定义在不依赖Android的DecodeFormats中
+	static final Collection<BarcodeFormat> PRODUCT_FORMATS = DecodeFormats.PRODUCT_FORMATS;
+	static final Collection<BarcodeFormat> ONE_D_FORMATS = DecodeFormats.ONE_D_FORMATS;
+	static final Collection<BarcodeFormat> QR_CODE_FORMATS = DecodeFormats.QR_CODE_FORMATS;
+	static final Collection<BarcodeFormat> DATA_MATRIX_FORMATS = DecodeFormats.DATA_MATRIX_FORMATS;
 
 	private DecodeFormatManager() {
 	}
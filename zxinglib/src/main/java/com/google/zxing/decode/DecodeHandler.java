@@ -16,24 +16,20 @@
 
 package com.google.zxing.decode;
 
-import android.graphics.Bitmap;
-import android.os.Bundle;
+import android.graphics.Rect;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.util.Log;
 
-import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.MultiFormatReader;
 import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.R;
-import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
-import com.google.zxing.common.HybridBinarizer;
 import com.google.zxing.activity.CaptureActivity;
 
-import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 
@@ -43,26 +39,78 @@ final class DecodeHandler extends Handler {
 
     private final CaptureActivity activity;
 
-    private final MultiFormatReader multiFormatReader;
+    /**
+     * 大扫描框下先缩小解码，失败再按全分辨率解码；扫描框内连续没有结果时看一眼整个画面
+     */
+    private final AdaptiveCropDecoder cropDecoder;
+
+    /**
+     * 一帧多码模式下解出画面中的所有条码，否则为null
+     */
+    private final MultiFrameDecoder multiFrameDecoder;
+
+    private final Map<DecodeHintType, Object> hints;
+
+    private final BinarizerType binarizerType;
+
+    private final boolean tiered;
+
+    /**
+     * 设置了多个扫描区域时按需创建，区域改变后重建
+     */
+    private RegionDecoder regionDecoder;
 
-    private boolean running = true;
+    private List<ScanRegion> decoderRegions;
 
-    DecodeHandler(CaptureActivity activity, Map<DecodeHintType, Object> hints) {
-        multiFormatReader = new MultiFormatReader();
-        multiFormatReader.setHints(hints);
+    /**
+     * 根据每帧的结果决定变焦，不自动变焦时为null
+     */
+    private final AutoZoomController autoZoom;
+
+    private final int generation;
+
+    /**
+     * 连续扫描时过滤重复结果，否则为null
+     */
+    private final DuplicateFilter duplicateFilter;
+
+    /**
+     * 由UI线程在退出时置为false，解码线程据此跳过排队中的帧并丢弃正在进行的解码结果
+     */
+    private volatile boolean running = true;
+
+    DecodeHandler(CaptureActivity activity, Map<DecodeHintType, Object> hints,
+                  BinarizerType binarizerType, boolean tiered,
+                  boolean fullFrameFallback, AutoZoomController autoZoom,
+                  int generation) {
+        cropDecoder = new AdaptiveCropDecoder(hints, binarizerType, tiered,
+                fullFrameFallback ? AdaptiveCropDecoder.DEFAULT_MISSES_BEFORE_FULL_FRAME : 0);
+        this.hints = hints;
+        this.binarizerType = binarizerType;
+        this.tiered = tiered;
+        this.autoZoom = autoZoom;
+        multiFrameDecoder = activity.isMultiMode()
+                ? new MultiFrameDecoder(hints, binarizerType) : null;
         this.activity = activity;
+        this.generation = generation;
+        this.duplicateFilter = activity.getDuplicateFilter();
+    }
+
+    /**
+     * May be called from any thread; the current decode, if any, finishes but
+     * its result is not delivered.
+     */
+    void cancel() {
+        running = false;
     }
 
     @Override
     public void handleMessage(Message message) {
-        if (!running) {
-            return;
-        }
-        if (message.what == R.id.decode) {
-            decode((byte[]) message.obj, message.arg1, message.arg2);
-        } else if (message.what == R.id.quit) {
+        if (message.what == R.id.quit) {
             running = false;
             Looper.myLooper().quit();
+        } else if (running && message.what == R.id.decode) {
+            decode((byte[]) message.obj, message.arg1, message.arg2);
         }
     }
 
@@ -79,62 +127,155 @@ final class DecodeHandler extends Handler {
         long start = System.currentTimeMillis();
         Result rawResult = null;
 
-        byte[] rotatedData = new byte[data.length];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++)
-                rotatedData[x * height + height - y - 1] = data[x + y * width];
-        }
+        byte[] rotatedData = FrameDecoder.rotate(data, width, height, 90);
         int tmp = width;
         width = height;
         height = tmp;
 
-        PlanarYUVLuminanceSource source = activity.getCameraManager()
-                .buildLuminanceSource(rotatedData, width, height);
-        if (source != null) {
-            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-            try {
-                // 预览界面最终取到的是个bitmap，然后对其进行解码
-                rawResult = multiFormatReader.decodeWithState(bitmap);
-            } catch (ReaderException re) {
-                // continue
-            } finally {
-                multiFormatReader.reset();
-            }
+        List<ScanRegion> regions = activity.getCameraManager().getScanRegions();
+        if (!regions.isEmpty()) {
+            decodeRegions(regions, rotatedData, width, height, start);
+            return;
+        }
+
+        if (multiFrameDecoder != null) {
+            decodeMultiple(activity.getCameraManager().buildLuminanceSource(
+                    rotatedData, width, height), start);
+            return;
+        }
+
+        PlanarYUVLuminanceSource source = null;
+        Rect rect = activity.getCameraManager().getFramingRectInPreview();
+        if (rect != null) {
+            rawResult = cropDecoder.decode(rotatedData, width, height,
+                    new int[]{rect.left, rect.top, rect.right, rect.bottom});
+            // 可能是移动后的区域或整个画面，缩略图与结果点坐标一致
+            source = cropDecoder.getLastSource();
+        }
+        updateZoom(rawResult != null);
+        if (rawResult != null && duplicateFilter != null
+                && !duplicateFilter.accept(rawResult)) {
+            // 重复的条码当作没有找到，直接扫描下一帧，不再解析
+            rawResult = null;
+        }
+
+        if (!running) {
+            // 扫描已退出，结果不再需要
+            return;
         }
 
         Handler handler = activity.getHandler();
         if (rawResult != null) {
             // Don't log the barcode contents for security.
-            long end = System.currentTimeMillis();
-            Log.d(TAG, "Found barcode in " + (end - start) + " ms");
+            long elapsed = System.currentTimeMillis() - start;
+            Log.d(TAG, "Found barcode in " + elapsed + " ms");
             if (handler != null) {
-                Message message = Message.obtain(handler,
-                        R.id.decode_succeeded, rawResult);
-                Bundle bundle = new Bundle();
-                bundleThumbnail(source, bundle);
-                message.setData(bundle);
-                message.sendToTarget();
+                // 解析结果和生成缩略图交给结果处理线程，完成后再发给UI线程
+                ResultProcessor.getInstance().submit(rawResult, source,
+                        elapsed, handler, R.id.decode_succeeded, generation);
             }
         } else {
             if (handler != null) {
-                Message message = Message.obtain(handler, R.id.decode_failed);
+                Message message = Message.obtain(handler, R.id.decode_failed,
+                        generation, 0);
                 message.sendToTarget();
             }
         }
     }
 
-    private static void bundleThumbnail(PlanarYUVLuminanceSource source,
-                                        Bundle bundle) {
-        int[] pixels = source.renderThumbnail();
-        int width = source.getThumbnailWidth();
-        int height = source.getThumbnailHeight();
-        Bitmap bitmap = Bitmap.createBitmap(pixels, 0, width, width, height,
-                Bitmap.Config.ARGB_8888);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 50, out);
-        bundle.putByteArray(DecodeThread.BARCODE_BITMAP, out.toByteArray());
-        bundle.putFloat(DecodeThread.BARCODE_SCALED_FACTOR, (float) width
-                / source.getWidth());
+    /**
+     * 一帧多码：解出画面中的全部条码，过滤掉重复的之后作为一批结果发出
+     */
+    private void decodeMultiple(PlanarYUVLuminanceSource source, long start) {
+        Result[] rawResults = null;
+        if (source != null) {
+            rawResults = multiFrameDecoder.decodeMultiple(source);
+        }
+        updateZoom(rawResults != null && rawResults.length > 0);
+        if (rawResults != null && duplicateFilter != null) {
+            List<Result> fresh = new ArrayList<Result>(rawResults.length);
+            for (Result rawResult : rawResults) {
+                if (duplicateFilter.accept(rawResult)) {
+                    fresh.add(rawResult);
+                }
+            }
+            rawResults = fresh.toArray(new Result[fresh.size()]);
+        }
+
+        if (!running) {
+            return;
+        }
+
+        Handler handler = activity.getHandler();
+        if (handler == null) {
+            return;
+        }
+        if (rawResults != null && rawResults.length > 0) {
+            long elapsed = System.currentTimeMillis() - start;
+            Log.d(TAG, "Found " + rawResults.length + " barcodes in " + elapsed + " ms");
+            ResultProcessor.getInstance().submitBatch(rawResults, null, source,
+                    elapsed, handler, R.id.decode_succeeded, generation);
+        } else {
+            Message.obtain(handler, R.id.decode_failed, generation, 0)
+                    .sendToTarget();
+        }
+    }
+
+    /**
+     * 多区域：各区域从同一帧中裁出并行解码，每个区域最多一个结果，带上区域名作为一批结果发出
+     */
+    private void decodeRegions(List<ScanRegion> regions, byte[] luminances,
+                               int width, int height, long start) {
+        if (regions != decoderRegions) {
+            regionDecoder = new RegionDecoder(regions, hints, binarizerType, tiered);
+            decoderRegions = regions;
+        }
+        Map<String, Result> found = regionDecoder.decode(luminances, width, height);
+        List<Result> rawResults = new ArrayList<Result>(found.size());
+        List<String> names = new ArrayList<String>(found.size());
+        for (Map.Entry<String, Result> entry : found.entrySet()) {
+            if (duplicateFilter == null || duplicateFilter.accept(entry.getValue())) {
+                rawResults.add(entry.getValue());
+                names.add(entry.getKey());
+            }
+        }
+
+        if (!running) {
+            return;
+        }
+
+        Handler handler = activity.getHandler();
+        if (handler == null) {
+            return;
+        }
+        if (!rawResults.isEmpty()) {
+            long elapsed = System.currentTimeMillis() - start;
+            Log.d(TAG, "Found barcodes in regions " + names + " in " + elapsed + " ms");
+            // 缩略图取整个画面，各区域的结果共用
+            PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(
+                    luminances, width, height, 0, 0, width, height, false);
+            ResultProcessor.getInstance().submitBatch(
+                    rawResults.toArray(new Result[rawResults.size()]),
+                    names.toArray(new String[names.size()]), source,
+                    elapsed, handler, R.id.decode_succeeded, generation);
+        } else {
+            Message.obtain(handler, R.id.decode_failed, generation, 0)
+                    .sendToTarget();
+        }
+    }
+
+    /**
+     * 把这一帧的结果告诉自动变焦，需要变焦时交给相机线程去做，解码线程不等待
+     */
+    private void updateZoom(boolean found) {
+        if (autoZoom == null || !running) {
+            return;
+        }
+        int zoom = found ? autoZoom.onDecodeSucceeded() : autoZoom.onDecodeFailed();
+        if (zoom != AutoZoomController.NO_CHANGE) {
+            Log.d(TAG, "Auto zoom to level " + zoom);
+            activity.getCameraManager().setZoomAsync(zoom);
+        }
     }
 
 }
@@ -17,13 +17,14 @@
 package com.google.zxing.decode;
 
 import android.content.SharedPreferences;
-import android.os.Handler;
 import android.os.Looper;
+import android.os.Message;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
+import com.google.zxing.R;
 import com.google.zxing.ResultPointCallback;
 import com.google.zxing.config.Config;
 import com.google.zxing.activity.CaptureActivity;
@@ -41,24 +42,39 @@ import java.util.concurrent.CountDownLatch;
  */
 final class DecodeThread extends Thread {
 
-	public static final String BARCODE_BITMAP = "barcode_bitmap";
-
-	public static final String BARCODE_SCALED_FACTOR = "barcode_scaled_factor";
-
 	private final CaptureActivity activity;
 
 	private final Map<DecodeHintType, Object> hints;
 
-	private Handler handler;
+	/**
+	 * 所属CaptureActivityHandler的代数，随解码结果一起回传，用于丢弃过期结果
+	 */
+	private final int generation;
+
+	private final BinarizerType binarizerType;
+
+	private final boolean tiered;
+
+	private final boolean fullFrameFallback;
+
+	/**
+	 * 不自动变焦时为null
+	 */
+	private final AutoZoomController autoZoom;
+
+	private DecodeHandler handler;
 
 	private final CountDownLatch handlerInitLatch;
 
 	DecodeThread(CaptureActivity activity,
 			Collection<BarcodeFormat> decodeFormats,
 			Map<DecodeHintType, ?> baseHints, String characterSet,
-			ResultPointCallback resultPointCallback) {
+			ResultPointCallback resultPointCallback,
+			AutoZoomController autoZoom, int generation) {
 
 		this.activity = activity;
+		this.autoZoom = autoZoom;
+		this.generation = generation;
 		handlerInitLatch = new CountDownLatch(1);
 
 		hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
@@ -68,9 +84,14 @@ final class DecodeThread extends Thread {
 
 		// The prefs can't change while the thread is running, so pick them up
 		// once here.
+		SharedPreferences prefs = PreferenceManager
+				.getDefaultSharedPreferences(activity);
+		binarizerType = BinarizerType.parse(prefs.getString(
+				Config.KEY_BINARIZER, null));
+		tiered = prefs.getBoolean(Config.KEY_TIERED_BINARIZATION, true);
+		fullFrameFallback = prefs.getBoolean(Config.KEY_FULL_FRAME_FALLBACK,
+				true);
 		if (decodeFormats == null || decodeFormats.isEmpty()) {
-			SharedPreferences prefs = PreferenceManager
-					.getDefaultSharedPreferences(activity);
 			decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
 			if (prefs.getBoolean(Config.KEY_DECODE_1D, false)) {
 				decodeFormats.addAll(DecodeFormatManager.ONE_D_FORMATS);
@@ -93,7 +114,7 @@ final class DecodeThread extends Thread {
 		Log.i("DecodeThread", "Hints: " + hints);
 	}
 
-	Handler getHandler() {
+	DecodeHandler getHandler() {
 		try {
 			handlerInitLatch.await();
 		}
@@ -103,10 +124,22 @@ final class DecodeThread extends Thread {
 		return handler;
 	}
 
+	/**
+	 * Stops decoding without waiting for the thread to exit. Frames already
+	 * queued are skipped and an in-flight decode drops its result.
+	 */
+	void quit() {
+		DecodeHandler theHandler = getHandler();
+		theHandler.cancel();
+		theHandler.sendMessageAtFrontOfQueue(Message.obtain(theHandler,
+				R.id.quit));
+	}
+
 	@Override
 	public void run() {
 		Looper.prepare();
-		handler = new DecodeHandler(activity, hints);
+		handler = new DecodeHandler(activity, hints, binarizerType,
+				tiered, fullFrameFallback, autoZoom, generation);
 		handlerInitLatch.countDown();
 		Looper.loop();
 	}
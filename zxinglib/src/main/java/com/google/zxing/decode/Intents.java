@@ -170,6 +170,25 @@ public final class Intents {
      */
     public static final String SAVE_HISTORY = "SAVE_HISTORY";
 
+    /**
+     * Setting this to true keeps scanning after each result instead of returning the first one,
+     * overriding {@link com.google.zxing.config.Config#KEY_BULK_MODE}. Specified as a {@code boolean}.
+     */
+    public static final String BULK_MODE = "SCAN_BULK_MODE";
+
+    /**
+     * Setting this to true decodes every barcode in a frame instead of only the first one,
+     * overriding {@link com.google.zxing.config.Config#KEY_DECODE_MULTIPLE}. Specified as a {@code boolean}.
+     */
+    public static final String MULTIPLE = "SCAN_MULTIPLE";
+
+    /**
+     * Named regions of the preview to decode separately and in parallel, instead of the framing
+     * rect. Specified as a {@code String} such as {@code "left:0,0,0.5,1;right:0.5,0,1,1"},
+     * see {@link com.google.zxing.decode.ScanRegion#parseList(String)}.
+     */
+    public static final String REGIONS = "SCAN_REGIONS";
+
     private Scan() {
     }
   }
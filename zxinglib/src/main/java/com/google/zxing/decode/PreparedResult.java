@@ -0,0 +1,84 @@
+package com.google.zxing.decode;
+
+import android.graphics.Bitmap;
+
+import com.google.zxing.Result;
+import com.google.zxing.client.result.ParsedResult;
+import com.google.zxing.client.result.ParsedResultType;
+
+/**
+ * 在后台准备好的扫描结果：原始结果、解析后的结果、显示用的文本和缩略图。创建后不再修改，
+ * UI线程拿到后可以直接显示，不必再解析或解码图片
+ *
+ * @author hugo
+ *
+ */
+public final class PreparedResult {
+
+	private final Result rawResult;
+	private final ParsedResult parsedResult;
+	private final String displayText;
+	private final Bitmap thumbnail;
+	private final float scaleFactor;
+	private final long decodeMillis;
+	private final String region;
+
+	PreparedResult(Result rawResult, ParsedResult parsedResult,
+			Bitmap thumbnail, float scaleFactor, long decodeMillis,
+			String region) {
+		this.rawResult = rawResult;
+		this.parsedResult = parsedResult;
+		this.displayText = parsedResult.toString();
+		this.thumbnail = thumbnail;
+		this.scaleFactor = scaleFactor;
+		this.decodeMillis = decodeMillis;
+		this.region = region;
+	}
+
+	public Result getRawResult() {
+		return rawResult;
+	}
+
+	public ParsedResult getParsedResult() {
+		return parsedResult;
+	}
+
+	public ParsedResultType getType() {
+		return parsedResult.getType();
+	}
+
+	/**
+	 * @return 解析后的文本，即ParsedResult.toString()
+	 */
+	public String getDisplayText() {
+		return displayText;
+	}
+
+	/**
+	 * @return 解码所用画面的灰度缩略图，不可修改；从图片识别时为null
+	 */
+	public Bitmap getThumbnail() {
+		return thumbnail;
+	}
+
+	/**
+	 * @return 缩略图相对解码画面的缩放比例
+	 */
+	public float getScaleFactor() {
+		return scaleFactor;
+	}
+
+	/**
+	 * @return 从开始解码到找到条码的时间
+	 */
+	public long getDecodeMillis() {
+		return decodeMillis;
+	}
+
+	/**
+	 * @return 找到条码的扫描区域名，见{@link ScanRegion}；未设置扫描区域时为null
+	 */
+	public String getRegion() {
+		return region;
+	}
+}
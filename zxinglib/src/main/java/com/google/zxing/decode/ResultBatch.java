@@ -0,0 +1,51 @@
+package com.google.zxing.decode;
+
+import java.util.Collections;
+import java.util.List;
+
+import android.graphics.Bitmap;
+
+/**
+ * 一帧中找到的全部结果，各结果共用同一张缩略图。创建后不再修改
+ *
+ * @author hugo
+ *
+ */
+public final class ResultBatch {
+
+	private final List<PreparedResult> results;
+	private final Bitmap thumbnail;
+	private final long decodeMillis;
+
+	ResultBatch(List<PreparedResult> results, Bitmap thumbnail,
+			long decodeMillis) {
+		this.results = Collections.unmodifiableList(results);
+		this.thumbnail = thumbnail;
+		this.decodeMillis = decodeMillis;
+	}
+
+	/**
+	 * @return 按找到的顺序排列，不可修改，至少有一个
+	 */
+	public List<PreparedResult> getResults() {
+		return results;
+	}
+
+	public int size() {
+		return results.size();
+	}
+
+	/**
+	 * @return 解码画面的灰度缩略图，不可修改；可能为null
+	 */
+	public Bitmap getThumbnail() {
+		return thumbnail;
+	}
+
+	/**
+	 * @return 从开始解码到找到全部条码的时间
+	 */
+	public long getDecodeMillis() {
+		return decodeMillis;
+	}
+}
@@ -0,0 +1,189 @@
+package com.google.zxing.decode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Message;
+import android.util.Log;
+
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.R;
+import com.google.zxing.Result;
+import com.google.zxing.client.result.ParsedResult;
+import com.google.zxing.client.result.ResultParser;
+import com.google.zxing.client.result.TextParsedResult;
+import com.google.zxing.common.DaemonExecutors;
+
+/**
+ * 解码之后的结果处理阶段：在单独的后台线程中解析结果、生成缩略图，完成后把{@link PreparedResult}
+ * 发给UI线程。解码线程交出结果后立即返回，UI线程收到的是可以直接显示的结果。
+ * 缩略图或解析失败时仍然发出结果（没有缩略图、按纯文本显示），处理中出现其他错误时发出decode_failed，
+ * 扫描不会因为没有回音而停住
+ *
+ * @author hugo
+ *
+ */
+public final class ResultProcessor {
+
+	private static final String TAG = ResultProcessor.class.getSimpleName();
+
+	private static final ResultProcessor INSTANCE = new ResultProcessor();
+
+	/**
+	 * 结果按到达顺序处理
+	 */
+	private final ExecutorService executor = DaemonExecutors
+			.newSingleThreadExecutor("ResultProcessor");
+
+	private ResultProcessor() {
+	}
+
+	public static ResultProcessor getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * 在当前线程中准备结果
+	 *
+	 * @param source
+	 *            解码所用的画面，用来生成缩略图；可以为null
+	 */
+	public static PreparedResult prepare(Result rawResult,
+			PlanarYUVLuminanceSource source, long decodeMillis) {
+		Bitmap thumbnail = renderThumbnail(source);
+		return new PreparedResult(rawResult, parse(rawResult), thumbnail,
+				scaleFactor(thumbnail, source), decodeMillis, null);
+	}
+
+	/**
+	 * 在当前线程中准备同一帧的多个结果，缩略图只生成一次
+	 *
+	 * @param regions
+	 *            与rawResults一一对应的扫描区域名；可以为null
+	 * @param source
+	 *            解码所用的画面，用来生成缩略图；可以为null
+	 */
+	public static ResultBatch prepareBatch(Result[] rawResults,
+			String[] regions, PlanarYUVLuminanceSource source,
+			long decodeMillis) {
+		Bitmap thumbnail = renderThumbnail(source);
+		float scaleFactor = scaleFactor(thumbnail, source);
+		List<PreparedResult> results = new ArrayList<PreparedResult>(
+				rawResults.length);
+		for (int i = 0; i < rawResults.length; i++) {
+			results.add(new PreparedResult(rawResults[i],
+					parse(rawResults[i]), thumbnail, scaleFactor,
+					decodeMillis, regions == null ? null : regions[i]));
+		}
+		return new ResultBatch(results, thumbnail, decodeMillis);
+	}
+
+	/**
+	 * 在后台准备结果，完成后以Message(what, arg1 = generation, obj = PreparedResult)
+	 * 发给target。source的数据在处理完之前不能被改写
+	 */
+	public void submit(final Result rawResult,
+			final PlanarYUVLuminanceSource source, final long decodeMillis,
+			final Handler target, final int what, final int generation) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				PreparedResult prepared;
+				try {
+					prepared = prepare(rawResult, source, decodeMillis);
+				}
+				catch (Throwable t) {
+					Log.w(TAG, "Unable to prepare result", t);
+					sendFailed(target, generation);
+					return;
+				}
+				Message.obtain(target, what, generation, 0, prepared)
+						.sendToTarget();
+			}
+		});
+	}
+
+	/**
+	 * 在后台准备一帧的多个结果，完成后以Message(what, arg1 = generation, obj = ResultBatch)
+	 * 发给target。source的数据在处理完之前不能被改写
+	 *
+	 * @param regions
+	 *            与rawResults一一对应的扫描区域名；可以为null
+	 */
+	public void submitBatch(final Result[] rawResults,
+			final String[] regions, final PlanarYUVLuminanceSource source, final long decodeMillis,
+			final Handler target, final int what, final int generation) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				ResultBatch batch;
+				try {
+					batch = prepareBatch(rawResults, regions, source,
+							decodeMillis);
+				}
+				catch (Throwable t) {
+					Log.w(TAG, "Unable to prepare results", t);
+					sendFailed(target, generation);
+					return;
+				}
+				Message.obtain(target, what, generation, 0, batch)
+						.sendToTarget();
+			}
+		});
+	}
+
+	/**
+	 * 处理失败时让扫描继续：与一帧没有解出结果相同
+	 */
+	private static void sendFailed(Handler target, int generation) {
+		Message.obtain(target, R.id.decode_failed, generation, 0)
+				.sendToTarget();
+	}
+
+	/**
+	 * 解析失败时按纯文本显示
+	 */
+	private static ParsedResult parse(Result rawResult) {
+		try {
+			return ResultParser.parseResult(rawResult);
+		}
+		catch (RuntimeException e) {
+			Log.w(TAG, "Unable to parse result", e);
+			return new TextParsedResult(rawResult.getText(), null);
+		}
+	}
+
+	/**
+	 * @return 失败时为null，缩略图不影响结果本身
+	 */
+	private static Bitmap renderThumbnail(PlanarYUVLuminanceSource source) {
+		if (source == null) {
+			return null;
+		}
+		try {
+			int[] pixels = source.renderThumbnail();
+			int width = source.getThumbnailWidth();
+			int height = source.getThumbnailHeight();
+			// 直接交给UI线程，不再压缩成JPEG再解码
+			return Bitmap.createBitmap(pixels, 0, width, width, height,
+					Bitmap.Config.ARGB_8888);
+		}
+		catch (RuntimeException e) {
+			Log.w(TAG, "Unable to render thumbnail", e);
+			return null;
+		}
+		catch (OutOfMemoryError e) {
+			Log.w(TAG, "Unable to render thumbnail", e);
+			return null;
+		}
+	}
+
+	private static float scaleFactor(Bitmap thumbnail,
+			PlanarYUVLuminanceSource source) {
+		return thumbnail == null ? 1.0f : (float) source.getThumbnailWidth()
+				/ source.getWidth();
+	}
+}
@@ -0,0 +1,214 @@
+package com.google.zxing.decode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.util.Log;
+
+import com.google.zxing.Result;
+import com.google.zxing.common.BitmapPool;
+import com.google.zxing.common.DaemonExecutors;
+
+/**
+ * 超大图片的分块解码：用BitmapRegionDecoder按相互重叠的块依次读出图片，在有界线程池中并行解码，
+ * 内存峰值只与块大小和线程数有关，与图片大小无关。需要API 10
+ *
+ * @author hugo
+ *
+ */
+@SuppressLint("NewApi")
+final class TiledDecoder {
+
+	private static final String TAG = TiledDecoder.class.getSimpleName();
+
+	/**
+	 * 解码后每块的边长（像素）
+	 */
+	private static final int TILE_SIZE = 1024;
+
+	/**
+	 * 相邻块重叠的边长，跨越块边界且小于该值的码总能在某一块中完整出现
+	 */
+	private static final int TILE_OVERLAP = TILE_SIZE / 4;
+
+	/**
+	 * 同时解码的块数上限，也就是同时驻留内存的块数上限
+	 */
+	private static final int THREADS = Math.max(1,
+			Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	private static final DaemonExecutors.Lazy EXECUTOR = new DaemonExecutors.Lazy(
+			"TiledDecoder", THREADS);
+
+	private final Context context;
+
+	/**
+	 * MultiFormatReader不是线程安全的，每个工作线程一个解码器
+	 */
+	private final ThreadLocal<BitmapDecoder> decoders = new ThreadLocal<BitmapDecoder>() {
+		@Override
+		protected BitmapDecoder initialValue() {
+			return new BitmapDecoder(context);
+		}
+	};
+
+	TiledDecoder(Context context) {
+		this.context = context;
+	}
+
+	/**
+	 * @param sampleSize
+	 *            读取每块时的inSampleSize，决定解码分辨率
+	 * @param findAll
+	 *            为false时找到第一个码即取消其余的块
+	 * @return 找到的码，按内容和格式去重，结果点坐标相对于原图
+	 */
+	List<Result> decode(String path, int sampleSize, boolean findAll) {
+		List<Result> results = new ArrayList<Result>();
+		final BitmapRegionDecoder regionDecoder;
+		try {
+			regionDecoder = BitmapRegionDecoder.newInstance(path, false);
+		}
+		catch (IOException e) {
+			Log.w(TAG, "Unable to open " + path, e);
+			return results;
+		}
+
+		try {
+			List<Rect> tiles = buildTiles(regionDecoder.getWidth(),
+					regionDecoder.getHeight(), sampleSize);
+			final AtomicBoolean stop = new AtomicBoolean();
+			CompletionService<Result> completion = new ExecutorCompletionService<Result>(
+					EXECUTOR.get());
+			List<Future<Result>> futures = new ArrayList<Future<Result>>(
+					tiles.size());
+			for (Rect tile : tiles) {
+				futures.add(completion.submit(new TileTask(regionDecoder,
+						tile, sampleSize, stop)));
+			}
+
+			Map<String, Result> found = new LinkedHashMap<String, Result>();
+			try {
+				for (int i = 0; i < futures.size(); i++) {
+					Result result;
+					try {
+						result = completion.take().get();
+					}
+					catch (ExecutionException e) {
+						Log.w(TAG, "Tile decode failed", e.getCause());
+						continue;
+					}
+					if (result == null) {
+						continue;
+					}
+					String key = result.getBarcodeFormat() + ":"
+							+ result.getText();
+					if (!found.containsKey(key)) {
+						found.put(key, result);
+					}
+					if (!findAll) {
+						break;
+					}
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				stop.set(true);
+				for (Future<Result> future : futures) {
+					future.cancel(false);
+				}
+			}
+			results.addAll(found.values());
+		}
+		finally {
+			// 尚未开始读取的块会看到isRecycled()并直接返回
+			synchronized (regionDecoder) {
+				regionDecoder.recycle();
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * 以原图坐标划分相互重叠的块
+	 */
+	private static List<Rect> buildTiles(int width, int height, int sampleSize) {
+		int tile = TILE_SIZE * sampleSize;
+		int step = (TILE_SIZE - TILE_OVERLAP) * sampleSize;
+		List<Rect> tiles = new ArrayList<Rect>();
+		for (int top = 0;; top += step) {
+			int bottom = Math.min(height, top + tile);
+			for (int left = 0;; left += step) {
+				int right = Math.min(width, left + tile);
+				tiles.add(new Rect(left, top, right, bottom));
+				if (right >= width) {
+					break;
+				}
+			}
+			if (bottom >= height) {
+				break;
+			}
+		}
+		return tiles;
+	}
+
+	private final class TileTask implements Callable<Result> {
+
+		private final BitmapRegionDecoder regionDecoder;
+		private final Rect tile;
+		private final int sampleSize;
+		private final AtomicBoolean stop;
+
+		TileTask(BitmapRegionDecoder regionDecoder, Rect tile, int sampleSize,
+				AtomicBoolean stop) {
+			this.regionDecoder = regionDecoder;
+			this.tile = tile;
+			this.sampleSize = sampleSize;
+			this.stop = stop;
+		}
+
+		@Override
+		public Result call() {
+			if (stop.get()) {
+				return null;
+			}
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inSampleSize = sampleSize;
+			options.inPreferredConfig = Bitmap.Config.RGB_565;
+			Bitmap bitmap;
+			synchronized (regionDecoder) {
+				if (stop.get() || regionDecoder.isRecycled()) {
+					return null;
+				}
+				bitmap = BitmapPool.getInstance().decodeRegion(regionDecoder,
+						tile, options);
+			}
+			if (bitmap == null) {
+				return null;
+			}
+			Result result = decoders.get().getRawResult(bitmap);
+			float scale = (float) tile.width() / bitmap.getWidth();
+			// 各块大小基本相同，API 16起下一块直接复用
+			BitmapPool.getInstance().put(bitmap);
+			return result == null ? null : BitmapDecoder.transform(result,
+					scale, tile.left, tile.top);
+		}
+	}
+}
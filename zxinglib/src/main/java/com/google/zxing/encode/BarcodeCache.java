@@ -0,0 +1,224 @@
+package com.google.zxing.encode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.CacheDirectory;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+/**
+ * 生成的条码图片缓存，列表中反复显示同样的内容时不必每次重新编码和绘制。线程安全
+ * <p>
+ * 内存中按内容、格式、尺寸、纠错级别、留白和像素格式缓存绘制好的bitmap，按占用字节数限制总大小，
+ * 超出时淘汰最久未用的；磁盘中按除尺寸和像素格式外的参数缓存模块分辨率的{@link PackedBitMatrix}，
+ * 每个码只有几百字节，命中时省去编码，只需重新绘制。
+ * <p>
+ * 返回的bitmap由缓存共享，调用方不能修改或recycle
+ *
+ * @author hugo
+ *
+ */
+public final class BarcodeCache {
+
+	/**
+	 * 内容统一按UTF-8编码
+	 */
+	private static final String CHARACTER_SET = "UTF-8";
+
+	private static final int DISK_FORMAT_VERSION = 1;
+
+	/**
+	 * 磁盘中保留的条码数
+	 */
+	private static final int MAX_DISK_ENTRIES = 1024;
+
+	private static BarcodeCache instance;
+
+	private final LinkedHashMap<String, Bitmap> memory = new LinkedHashMap<String, Bitmap>(
+			16, 0.75f, true);
+
+	private final int maxMemoryBytes;
+
+	private int memoryBytes;
+
+	/**
+	 * 只缓存在内存中时为null
+	 */
+	private volatile CacheDirectory disk;
+
+	/**
+	 * @param maxMemoryBytes
+	 *            内存中bitmap的总字节数上限
+	 * @param directory
+	 *            磁盘缓存目录，为null时只缓存在内存中
+	 */
+	public BarcodeCache(int maxMemoryBytes, File directory) {
+		this.maxMemoryBytes = maxMemoryBytes;
+		setDirectory(directory);
+	}
+
+	/**
+	 * 应用内共用的缓存，使用最大堆内存的1/16；调用{@link #getInstance(Context)}之前只缓存在内存中
+	 */
+	public static synchronized BarcodeCache getInstance() {
+		if (instance == null) {
+			instance = new BarcodeCache((int) Math.min(Integer.MAX_VALUE,
+					Runtime.getRuntime().maxMemory() / 16), null);
+		}
+		return instance;
+	}
+
+	/**
+	 * 应用内共用的缓存，同时在缓存目录中启用磁盘缓存
+	 */
+	public static synchronized BarcodeCache getInstance(Context context) {
+		BarcodeCache cache = getInstance();
+		if (cache.disk == null) {
+			cache.setDirectory(new File(context.getCacheDir(), "zxing-codes"));
+		}
+		return cache;
+	}
+
+	private void setDirectory(File directory) {
+		if (directory != null) {
+			disk = new CacheDirectory(directory, MAX_DISK_ENTRIES);
+		}
+	}
+
+	/**
+	 * 取得条码图片，没有缓存时编码并绘制
+	 *
+	 * @param ecLevel
+	 *            二维码纠错级别，为null时用默认值
+	 * @param margin
+	 *            留白的模块数，为{@link EncodeHints#DEFAULT_MARGIN}时用默认值
+	 * @param config
+	 *            见{@link BarcodeRenderer#render}
+	 */
+	public Bitmap get(String contents, BarcodeFormat format, int width,
+			int height, ErrorCorrectionLevel ecLevel, int margin,
+			Bitmap.Config config) throws WriterException {
+		// 纠错级别只对二维码有效，为null时即默认的L，同样的码只缓存一份
+		ErrorCorrectionLevel keyLevel = null;
+		if (format == BarcodeFormat.QR_CODE) {
+			keyLevel = ecLevel != null ? ecLevel : ErrorCorrectionLevel.L;
+		}
+		String matrixKey = format.name() + '\n' + keyLevel + '\n' + margin
+				+ '\n' + contents;
+		String key = width + "x" + height + '\n' + config + '\n' + matrixKey;
+		synchronized (memory) {
+			Bitmap bitmap = memory.get(key);
+			if (bitmap != null) {
+				return bitmap;
+			}
+		}
+
+		CacheDirectory disk = this.disk;
+		String diskKey = null;
+		PackedBitMatrix packed = null;
+		if (disk != null) {
+			diskKey = CacheDirectory.sha1Hex(matrixKey);
+			packed = readDisk(disk, diskKey);
+		}
+		BitMatrix modules;
+		if (packed != null) {
+			modules = packed.unpack();
+		}
+		else {
+			modules = BarcodeRenderer.encode(contents, format, EncodeHints
+					.build(format, ecLevel, margin, CHARACTER_SET));
+			if (diskKey != null) {
+				writeDisk(disk, diskKey, PackedBitMatrix.pack(modules));
+			}
+		}
+		Bitmap bitmap = BarcodeRenderer.render(modules, width, height, config);
+		putMemory(key, bitmap);
+		return bitmap;
+	}
+
+	/**
+	 * 清空内存中的bitmap，如在内存不足时调用。已返回的bitmap仍然可用
+	 */
+	public void clearMemory() {
+		synchronized (memory) {
+			memory.clear();
+			memoryBytes = 0;
+		}
+	}
+
+	private void putMemory(String key, Bitmap bitmap) {
+		int size = bitmap.getRowBytes() * bitmap.getHeight();
+		// 太大的图片不缓存，免得一张就挤掉列表中的其他条码
+		if (size > maxMemoryBytes / 4) {
+			return;
+		}
+		synchronized (memory) {
+			Bitmap previous = memory.put(key, bitmap);
+			if (previous != null) {
+				memoryBytes -= previous.getRowBytes() * previous.getHeight();
+			}
+			memoryBytes += size;
+			Iterator<Bitmap> it = memory.values().iterator();
+			while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+				Bitmap eldest = it.next();
+				memoryBytes -= eldest.getRowBytes() * eldest.getHeight();
+				it.remove();
+			}
+		}
+	}
+
+	private static PackedBitMatrix readDisk(CacheDirectory disk, String key) {
+		File file = disk.file(key);
+		if (!file.exists()) {
+			return null;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(file));
+			if (in.readByte() != DISK_FORMAT_VERSION) {
+				return null;
+			}
+			PackedBitMatrix packed = PackedBitMatrix.readFrom(in);
+			// 按修改时间淘汰，命中的条码保留得更久
+			file.setLastModified(System.currentTimeMillis());
+			return packed;
+		}
+		catch (IOException e) {
+			// 文件损坏，当作没有缓存
+			file.delete();
+			return null;
+		}
+		finally {
+			CacheDirectory.closeQuietly(in);
+		}
+	}
+
+	private static void writeDisk(CacheDirectory disk, String key,
+			PackedBitMatrix packed) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				packed.getByteCount() + 16);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeByte(DISK_FORMAT_VERSION);
+			packed.writeTo(out);
+			out.flush();
+		}
+		catch (IOException e) {
+			// 写入内存不会失败
+			throw new IllegalStateException(e);
+		}
+		disk.write(key, bytes);
+	}
+}
@@ -0,0 +1,166 @@
+package com.google.zxing.encode;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * 按模块分辨率保存条码、绘制时再放大的Drawable。内部是每个模块一个字节的ALPHA_8 bitmap，
+ * 33x33的二维码约1KB，而480x480的ARGB_8888约900KB；绘制时关闭过滤，模块边缘保持清晰。
+ * <p>
+ * 固有大小为模块数乘以每个模块的像素数（一维码高度按{@link PngWriter#DEFAULT_BAR_HEIGHT}个模块），
+ * wrap_content时按此显示。按bounds绘制：能放下时每个模块取整数个像素并居中，否则保持宽高比缩小并居中
+ *
+ * @author hugo
+ *
+ */
+public class BarcodeDrawable extends Drawable {
+
+	/**
+	 * 默认每个模块的像素数
+	 */
+	public static final int DEFAULT_MODULE_SCALE = 4;
+
+	private final Bitmap modules;
+
+	private final int moduleScale;
+
+	private final Paint foreground = new Paint();
+
+	private final Paint background = new Paint();
+
+	private final Rect destination = new Rect();
+
+	private int foregroundColor = Color.BLACK;
+
+	private int backgroundColor = Color.WHITE;
+
+	private int alpha = 255;
+
+	/**
+	 * @param matrix
+	 *            模块分辨率的矩阵，见{@link BarcodeRenderer#encode}
+	 */
+	public BarcodeDrawable(BitMatrix matrix) {
+		this(matrix, DEFAULT_MODULE_SCALE);
+	}
+
+	/**
+	 * @param moduleScale
+	 *            固有大小中每个模块的像素数
+	 */
+	public BarcodeDrawable(BitMatrix matrix, int moduleScale) {
+		if (moduleScale < 1) {
+			throw new IllegalArgumentException("Module scale must be positive");
+		}
+		this.moduleScale = moduleScale;
+		modules = BarcodeRenderer.render(matrix, matrix.getWidth(),
+				matrix.getHeight(), Bitmap.Config.ALPHA_8);
+		foreground.setFilterBitmap(false);
+		foreground.setAntiAlias(false);
+		applyColors();
+	}
+
+	public BarcodeDrawable(PackedBitMatrix matrix) {
+		this(matrix.unpack());
+	}
+
+	/**
+	 * 设置黑色模块和背景的颜色，默认黑码白底
+	 */
+	public void setColors(int foregroundColor, int backgroundColor) {
+		this.foregroundColor = foregroundColor;
+		this.backgroundColor = backgroundColor;
+		applyColors();
+		invalidateSelf();
+	}
+
+	@Override
+	public int getIntrinsicWidth() {
+		return modules.getWidth() * moduleScale;
+	}
+
+	@Override
+	public int getIntrinsicHeight() {
+		int moduleHeight = modules.getHeight();
+		return (moduleHeight == 1 ? PngWriter.DEFAULT_BAR_HEIGHT : moduleHeight)
+				* moduleScale;
+	}
+
+	@Override
+	protected void onBoundsChange(Rect bounds) {
+		int moduleWidth = modules.getWidth();
+		int moduleHeight = modules.getHeight();
+		int width;
+		int height;
+		if (moduleHeight == 1) {
+			// 一维码纵向铺满，横向尽量取整数倍
+			int scale = bounds.width() / moduleWidth;
+			width = scale >= 1 ? moduleWidth * scale : bounds.width();
+			height = bounds.height();
+		}
+		else {
+			int scale = Math.min(bounds.width() / moduleWidth, bounds.height()
+					/ moduleHeight);
+			if (scale >= 1) {
+				width = moduleWidth * scale;
+				height = moduleHeight * scale;
+			}
+			else if (bounds.width() * moduleHeight < bounds.height()
+					* moduleWidth) {
+				// 放不下时按较窄的一边缩小，保持宽高比
+				width = bounds.width();
+				height = bounds.width() * moduleHeight / moduleWidth;
+			}
+			else {
+				width = bounds.height() * moduleWidth / moduleHeight;
+				height = bounds.height();
+			}
+		}
+		int left = bounds.left + (bounds.width() - width) / 2;
+		int top = bounds.top + (bounds.height() - height) / 2;
+		destination.set(left, top, left + width, top + height);
+	}
+
+	@Override
+	public void draw(Canvas canvas) {
+		canvas.drawRect(getBounds(), background);
+		canvas.drawBitmap(modules, null, destination, foreground);
+	}
+
+	@Override
+	public void setAlpha(int alpha) {
+		this.alpha = alpha;
+		applyColors();
+		invalidateSelf();
+	}
+
+	@Override
+	public void setColorFilter(ColorFilter colorFilter) {
+		foreground.setColorFilter(colorFilter);
+		background.setColorFilter(colorFilter);
+		invalidateSelf();
+	}
+
+	@Override
+	public int getOpacity() {
+		return PixelFormat.TRANSLUCENT;
+	}
+
+	/**
+	 * 颜色自身的透明度再乘以setAlpha设置的透明度
+	 */
+	private void applyColors() {
+		foreground.setColor(foregroundColor);
+		foreground.setAlpha((foregroundColor >>> 24) * alpha / 255);
+		background.setColor(backgroundColor);
+		background.setAlpha((backgroundColor >>> 24) * alpha / 255);
+	}
+}
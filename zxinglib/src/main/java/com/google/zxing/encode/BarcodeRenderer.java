@@ -0,0 +1,182 @@
+package com.google.zxing.encode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.encoder.ParallelMaskEncoder;
+
+/**
+ * 将条码矩阵快速画成Bitmap。先按模块分辨率编码（每个模块一位），绘制时按行取出位数组，
+ * 以连续的黑/白模块为单位整段填充，每个模块行只展开一次，其余像素行直接复制；
+ * 像素写入按线程复用的缓冲区后一次拷贝进bitmap，不再逐像素调用get(x, y)和setPixels。
+ * <p>
+ * 支持ALPHA_8（黑色模块不透明、其余透明，绘制颜色由Paint决定）、RGB_565（黑码白底）和ARGB_8888
+ * （黑码，默认与原来一样透明底，也可以选择白底）
+ *
+ * @author hugo
+ *
+ */
+public final class BarcodeRenderer {
+
+	/**
+	 * 每个线程的像素缓冲区和行位数组
+	 */
+	private static final ThreadLocal<Workspace> WORKSPACES = new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
+
+	private static final class Workspace {
+		byte[] pixels = new byte[0];
+		BitArray row = new BitArray();
+	}
+
+	private BarcodeRenderer() {
+	}
+
+	/**
+	 * 按模块分辨率编码：二维码每个模块一个点（含hints中的留白），一维码每个模块一列、高度为1。
+	 * 二维码用{@link ParallelMaskEncoder}并行选择掩码，结果与QRCodeWriter相同
+	 */
+	public static BitMatrix encode(String contents, BarcodeFormat format,
+			Map<EncodeHintType, ?> hints) throws WriterException {
+		if (format == BarcodeFormat.QR_CODE) {
+			return ParallelMaskEncoder.encode(contents, 0, 0, hints);
+		}
+		return new MultiFormatWriter().encode(contents, format, 0, 0, hints);
+	}
+
+	/**
+	 * 把模块矩阵按整数倍放大画到width x height的bitmap中并居中，ARGB_8888时背景透明
+	 *
+	 * @see #render(BitMatrix, int, int, Bitmap.Config, boolean)
+	 */
+	public static Bitmap render(BitMatrix modules, int width, int height,
+			Bitmap.Config config) {
+		return render(modules, width, height, config, false);
+	}
+
+	/**
+	 * 把模块矩阵按整数倍放大画到width x height的bitmap中并居中。二维码横竖放大倍数相同；
+	 * 高度为1的一维码横向按整数倍放大，纵向铺满
+	 *
+	 * @param config
+	 *            ALPHA_8、RGB_565或ARGB_8888
+	 * @param opaque
+	 *            ARGB_8888时背景是否为不透明的白色，否则透明；ALPHA_8总是透明，RGB_565总是白色
+	 */
+	public static Bitmap render(BitMatrix modules, int width, int height,
+			Bitmap.Config config, boolean opaque) {
+		int bytesPerPixel = bytesPerPixel(config);
+		int moduleWidth = modules.getWidth();
+		int moduleHeight = modules.getHeight();
+		int scaleX = Math.max(1, width / moduleWidth);
+		int scaleY = Math.max(1, height / moduleHeight);
+		if (moduleHeight > 1) {
+			scaleX = scaleY = Math.min(scaleX, scaleY);
+		}
+		width = Math.max(width, moduleWidth * scaleX);
+		height = Math.max(height, moduleHeight * scaleY);
+
+		Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+		int stride = bitmap.getRowBytes();
+		Workspace workspace = WORKSPACES.get();
+		int size = stride * height;
+		if (workspace.pixels.length < size) {
+			workspace.pixels = new byte[size];
+		}
+		rasterize(modules, scaleX, scaleY, (width - moduleWidth * scaleX) / 2,
+				(height - moduleHeight * scaleY) / 2, height, stride,
+				bytesPerPixel, opaque, workspace);
+		bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(workspace.pixels, 0, size));
+		return bitmap;
+	}
+
+	/**
+	 * 按bitmap内存中的字节顺序填充像素：RGB_565与不透明ARGB_8888的白色各字节均为0xFF，
+	 * 透明背景各字节均为0；ARGB_8888的黑色为R、G、B为0且A为0xFF；ALPHA_8黑色模块为0xFF
+	 */
+	private static void rasterize(BitMatrix modules, int scaleX, int scaleY,
+			int left, int top, int height, int stride, int bytesPerPixel,
+			boolean opaque, Workspace workspace) {
+		byte[] pixels = workspace.pixels;
+		boolean white = bytesPerPixel == 2 || bytesPerPixel == 4 && opaque;
+		Arrays.fill(pixels, 0, stride * height, white ? (byte) 0xFF : 0);
+
+		int moduleWidth = modules.getWidth();
+		BitArray row = workspace.row;
+		for (int y = 0; y < modules.getHeight(); y++) {
+			row = modules.getRow(y, row);
+			int offset = (top + y * scaleY) * stride;
+			// 以位数组的字为单位查找下一段黑色模块
+			int x = row.getNextSet(0);
+			while (x < moduleWidth) {
+				int end = Math.min(moduleWidth, row.getNextUnset(x));
+				int from = offset + (left + x * scaleX) * bytesPerPixel;
+				int to = offset + (left + end * scaleX) * bytesPerPixel;
+				switch (bytesPerPixel) {
+				case 1:
+					Arrays.fill(pixels, from, to, (byte) 0xFF);
+					break;
+				case 2:
+					Arrays.fill(pixels, from, to, (byte) 0);
+					break;
+				default:
+					if (white) {
+						for (int i = from; i < to; i += 4) {
+							pixels[i] = 0;
+							pixels[i + 1] = 0;
+							pixels[i + 2] = 0;
+						}
+					}
+					else {
+						for (int i = from + 3; i < to; i += 4) {
+							pixels[i] = (byte) 0xFF;
+						}
+					}
+					break;
+				}
+				x = row.getNextSet(end);
+			}
+			// 同一模块行的其余像素行直接复制
+			int rowHeight = moduleRowHeight(modules, scaleY, top, height);
+			for (int i = 1; i < rowHeight; i++) {
+				System.arraycopy(pixels, offset, pixels, offset + i * stride,
+						stride);
+			}
+		}
+		workspace.row = row;
+	}
+
+	/**
+	 * 高度为1的一维码铺满整个高度，其余按放大倍数
+	 */
+	private static int moduleRowHeight(BitMatrix modules, int scaleY, int top,
+			int height) {
+		return modules.getHeight() == 1 ? height - top : scaleY;
+	}
+
+	private static int bytesPerPixel(Bitmap.Config config) {
+		if (config == Bitmap.Config.ALPHA_8) {
+			return 1;
+		}
+		if (config == Bitmap.Config.RGB_565) {
+			return 2;
+		}
+		if (config == Bitmap.Config.ARGB_8888) {
+			return 4;
+		}
+		throw new IllegalArgumentException("Unsupported config: " + config);
+	}
+}
@@ -23,13 +23,27 @@ public final class ViewfinderResultPointCallback implements ResultPointCallback
 
 	private final ViewfinderView viewfinderView;
 
+	/**
+	 * 同时收到可疑点，用来估计码的大小；可以为null
+	 */
+	private final ResultPointCallback autoZoom;
+
 	public ViewfinderResultPointCallback(ViewfinderView viewfinderView) {
+		this(viewfinderView, null);
+	}
+
+	public ViewfinderResultPointCallback(ViewfinderView viewfinderView,
+			ResultPointCallback autoZoom) {
 		this.viewfinderView = viewfinderView;
+		this.autoZoom = autoZoom;
 	}
 
 	@Override
 	public void foundPossibleResultPoint(ResultPoint point) {
 		viewfinderView.addPossibleResultPoint(point);
+		if (autoZoom != null) {
+			autoZoom.foundPossibleResultPoint(point);
+		}
 	}
 
 }